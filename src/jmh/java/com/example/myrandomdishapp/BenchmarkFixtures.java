@@ -0,0 +1,41 @@
+package com.example.myrandomdishapp;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * ベンチマークで使用する楽天レシピAPIのレスポンス（src/jmh/resources/fixtures）を読み込みます。
+ */
+final class BenchmarkFixtures {
+
+    static final String RANKING = "ranking.json";
+    static final String CATEGORY_MEDIUM = "category-medium.json";
+    static final String CATEGORY_SMALL = "category-small.json";
+
+    private BenchmarkFixtures() {
+    }
+
+    static byte[] load(String name) {
+        try (InputStream in = BenchmarkFixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null) {
+                throw new IllegalStateException("フィクスチャが見つかりません: " + name);
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * フィクスチャのカテゴリ一覧から索引を構築します。
+     */
+    static CategoryIndex loadCategoryIndex() throws IOException {
+        CategoryIndex.IdPairs medium = new CategoryIndex.IdPairs();
+        CategoryIndex.IdPairs small = new CategoryIndex.IdPairs();
+        RakutenJsonDecoder.decodeCategories(new ByteArrayInputStream(load(CATEGORY_MEDIUM)), "medium", medium::add);
+        RakutenJsonDecoder.decodeCategories(new ByteArrayInputStream(load(CATEGORY_SMALL)), "small", small::add);
+        return CategoryIndex.build(medium, small);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.myrandomdishapp;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * カテゴリパスの解決と、献立のランダム選択（{@link DishController} が行う処理）の性能を測定します。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class CategorySelectionBenchmark {
+
+    private RecipeApiClient apiClient;
+    private CategoryIndex categoryIndex;
+    private RecipePool recipePool;
+    private int[] smallCategoryIds;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        categoryIndex = BenchmarkFixtures.loadCategoryIndex();
+        // 通信は行わないため、接続先はダミーでよい
+        apiClient = new RecipeApiClient("benchmark", "http://127.0.0.1:9/ranking", "http://127.0.0.1:9/list",
+                new RecipeHttpTransport(), DishMetrics.global());
+        apiClient.restoreCategories(categoryIndex);
+
+        smallCategoryIds = categoryIndex.allPaths().stream()
+                .mapToInt(path -> Integer.parseInt(path.substring(path.lastIndexOf('-') + 1)))
+                .toArray();
+
+        List<Recipe> recipes = RakutenJsonDecoder.decodeRanking(
+                new ByteArrayInputStream(BenchmarkFixtures.load(BenchmarkFixtures.RANKING)));
+        recipePool = new RecipePool();
+        for (String path : categoryIndex.allPaths()) {
+            recipePool.put(path, recipes);
+        }
+    }
+
+    @Benchmark
+    public String getFullCategoryIdPath() {
+        int id = smallCategoryIds[ThreadLocalRandom.current().nextInt(smallCategoryIds.length)];
+        return apiClient.getFullCategoryIdPath(id);
+    }
+
+    @Benchmark
+    public String randomCategoryPath() {
+        return categoryIndex.randomPath(ThreadLocalRandom.current());
+    }
+
+    @Benchmark
+    public RecipePool.PoolPick pickRandomFromPool() {
+        return recipePool.pickRandom(ThreadLocalRandom.current());
+    }
+
+    @Benchmark
+    public List<RecipePool.PoolPick> sampleWeeklyMenu() {
+        return recipePool.sampleDistinct(7, ThreadLocalRandom.current());
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.myrandomdishapp;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * フィクスチャを返すだけの、楽天レシピAPIの代わりとなるプロセス内HTTPサーバ。
+ */
+final class FixtureStubServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final byte[] ranking = BenchmarkFixtures.load(BenchmarkFixtures.RANKING);
+    private final byte[] categoryMedium = BenchmarkFixtures.load(BenchmarkFixtures.CATEGORY_MEDIUM);
+    private final byte[] categorySmall = BenchmarkFixtures.load(BenchmarkFixtures.CATEGORY_SMALL);
+
+    FixtureStubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/CategoryRanking", exchange -> respond(exchange, ranking));
+        server.createContext("/CategoryList", exchange -> {
+            String query = exchange.getRequestURI().getQuery();
+            respond(exchange, query != null && query.contains("categoryType=medium") ? categoryMedium : categorySmall);
+        });
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.start();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private static void respond(HttpExchange exchange, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.myrandomdishapp;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * レシピプールが温まった後の {@link DishController#generateDishApi(java.util.List, java.util.List)} のスループットを測定します。
+ *
+ * <p>RECIPE_POOL_WARM_CATEGORIES=1 とするため、計測中の献立はすべてプールから選ばれ、スタブサーバには届きません。
+ * 測定対象はプールからの選択とレスポンスの作成までで、HTTPの処理（Tomcat やシリアライズ）は含みません（メソッドを直接呼び出す）。
+ * スタブサーバは、準備段階でカテゴリをロードしてプールを埋めるためにだけ使用します。
+ * API経由の経路は共有レートリミッタ（1.5秒に1回）で律速されるため、スループットとしては測定しません。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class GenerateDishBenchmark {
+
+    private FixtureStubServer stub;
+    private Path dataDir;
+    private DishController controller;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        stub = new FixtureStubServer();
+        dataDir = Files.createTempDirectory("dish-bench");
+        // 設定はクラスの初期化時に読み込まれるため、コントローラを作成する前に指定する
+        System.setProperty("RAKUTEN_APP_ID", "benchmark");
+        System.setProperty("RAKUTEN_RANKING_BASE_URL", stub.baseUrl() + "/CategoryRanking");
+        System.setProperty("RAKUTEN_CATEGORY_LIST_BASE_URL", stub.baseUrl() + "/CategoryList");
+        System.setProperty("SNAPSHOT_PATH", dataDir.resolve("snapshot.bin").toString());
+        System.setProperty("IMAGE_CACHE_DIR", dataDir.resolve("images").toString());
+        System.setProperty("RECIPE_POOL_WARM_CATEGORIES", "1");
+
+        controller = new DishController(new SimpleMeterRegistry());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (controller.generateDishApi(null, null).join().getStatusCode().value() != 200) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("カテゴリのロードが時間内に完了しませんでした。");
+            }
+            Thread.sleep(200);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        controller.shutdown();
+        stub.close();
+        try (Stream<Path> files = Files.walk(dataDir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public ResponseEntity<byte[]> generateDishFromWarmPool() {
+        return controller.generateDishApi(null, null).join();
+    }
+}
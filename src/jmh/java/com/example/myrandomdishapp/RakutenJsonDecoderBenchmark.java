@@ -0,0 +1,50 @@
+package com.example.myrandomdishapp;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * APIレスポンスの解析（{@link RecipeApiClient#getDishAndImageAndDetailsFromCategoryRanking(String)} の内部処理）の性能を測定します。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RakutenJsonDecoderBenchmark {
+
+    private byte[] ranking;
+    private byte[] categorySmall;
+
+    @Setup
+    public void setUp() {
+        ranking = BenchmarkFixtures.load(BenchmarkFixtures.RANKING);
+        categorySmall = BenchmarkFixtures.load(BenchmarkFixtures.CATEGORY_SMALL);
+    }
+
+    @Benchmark
+    public List<Recipe> decodeRanking() throws IOException {
+        return RakutenJsonDecoder.decodeRanking(new ByteArrayInputStream(ranking));
+    }
+
+    @Benchmark
+    public CategoryIndex.IdPairs decodeSmallCategories() throws IOException {
+        CategoryIndex.IdPairs pairs = new CategoryIndex.IdPairs();
+        RakutenJsonDecoder.decodeCategories(new ByteArrayInputStream(categorySmall), "small", pairs::add);
+        return pairs;
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.myrandomdishapp;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * /api/generateDish に一定のレート（RPS）でリクエストを送り、レイテンシの分布とスループットを出力する負荷試験ツール。
+ *
+ * <p>応答を待たずに予定時刻どおりに次のリクエストを送る（オープンループ）ため、サーバが遅くなっても送信レートは下がりません。
+ * レイテンシは実際の送信時刻ではなく予定時刻から計測し、送信の遅れも応答時間に含めます（coordinated omission の補正）。
+ *
+ * <pre>
+ * LOAD_TARGET_URL        リクエスト先（既定: http://127.0.0.1:8080/api/generateDish）
+ * LOAD_RPS               1秒あたりのリクエスト数（既定: 50）
+ * LOAD_DURATION_SECONDS  計測時間（既定: 30）
+ * LOAD_WARMUP_SECONDS    計測前に同じレートで送る時間。結果には含めない（既定: 5）
+ * LOAD_TIMEOUT_MS        1リクエストのタイムアウト（既定: 10000）
+ * </pre>
+ * 実行例: mvn -Ploadtest compile exec:java -Dexec.mainClass=com.example.myrandomdishapp.LoadTestRunner -DLOAD_RPS=200
+ */
+public final class LoadTestRunner {
+
+    private final URI target = URI.create(EnvConfig.getString("LOAD_TARGET_URL", "http://127.0.0.1:8080/api/generateDish"));
+    private final long rps = EnvConfig.getLong("LOAD_RPS", 50);
+    private final long durationSeconds = EnvConfig.getLong("LOAD_DURATION_SECONDS", 30);
+    private final long warmupSeconds = EnvConfig.getLong("LOAD_WARMUP_SECONDS", 5);
+    private final Duration timeout = Duration.ofMillis(EnvConfig.getLong("LOAD_TIMEOUT_MS", 10_000));
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .executor(Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors())))
+            .build();
+
+    public static void main(String[] args) throws InterruptedException {
+        new LoadTestRunner().run();
+        System.exit(0);
+    }
+
+    public void run() throws InterruptedException {
+        if (rps <= 0 || durationSeconds <= 0) {
+            throw new IllegalArgumentException("LOAD_RPS と LOAD_DURATION_SECONDS は1以上を指定してください。");
+        }
+        System.out.println(target + " に " + rps + " req/s で送信します（ウォームアップ " + warmupSeconds + " 秒、計測 " + durationSeconds + " 秒）");
+        if (warmupSeconds > 0) {
+            drive(warmupSeconds, null);
+        }
+        Result result = new Result((int) (rps * durationSeconds));
+        long start = System.nanoTime();
+        drive(durationSeconds, result);
+        long elapsed = System.nanoTime() - start;
+        result.print(elapsed);
+    }
+
+    /**
+     * seconds 秒間、予定時刻どおりにリクエストを送り、すべての応答（またはタイムアウト）を待ちます。
+     */
+    private void drive(long seconds, Result result) throws InterruptedException {
+        int total = (int) (rps * seconds);
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rps;
+        CountDownLatch done = new CountDownLatch(total);
+        long start = System.nanoTime();
+
+        for (int i = 0; i < total; i++) {
+            long scheduledAt = start + i * intervalNanos;
+            long wait = scheduledAt - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            HttpRequest request = HttpRequest.newBuilder(target)
+                    .timeout(timeout)
+                    .POST(HttpRequest.BodyPublishers.noBody())
+                    .build();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                if (result != null) {
+                    result.record(System.nanoTime() - scheduledAt, response != null ? response.statusCode() : -1, error);
+                }
+                done.countDown();
+            });
+        }
+        done.await(timeout.toMillis() + 5_000, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 計測期間中の応答を集計します。
+     */
+    private static final class Result {
+        private final long[] latencies;
+        private final AtomicInteger count = new AtomicInteger();
+        private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+
+        Result(int expected) {
+            this.latencies = new long[expected];
+        }
+
+        void record(long latencyNanos, int status, Throwable error) {
+            int i = count.getAndIncrement();
+            if (i < latencies.length) {
+                latencies[i] = latencyNanos;
+            }
+            String outcome = error != null ? error.getClass().getSimpleName() : "HTTP " + status;
+            outcomes.computeIfAbsent(outcome, k -> new LongAdder()).increment();
+        }
+
+        void print(long elapsedNanos) {
+            int n = Math.min(count.get(), latencies.length);
+            long[] sorted = Arrays.copyOf(latencies, n);
+            Arrays.sort(sorted);
+            double seconds = elapsedNanos / 1e9;
+
+            System.out.println("==== 結果 ====");
+            System.out.printf("完了: %d 件 / %.1f 秒（スループット %.1f req/s）%n", n, seconds, n / seconds);
+            new TreeMap<>(outcomes).forEach((outcome, c) -> System.out.println("  " + outcome + ": " + c.sum()));
+            if (n == 0) {
+                return;
+            }
+            System.out.printf("レイテンシ(ms): p50=%.2f p90=%.2f p99=%.2f p999=%.2f max=%.2f%n",
+                    percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                    percentile(sorted, 0.999), sorted[n - 1] / 1e6);
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package com.example.myrandomdishapp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * 楽天レシピAPI（CategoryList / CategoryRanking）を模したローカルのシミュレータ。
+ * 実際のアプリIDでAPIを呼び出さずに、負荷試験や障害時の動作確認を行うために使用します。
+ *
+ * <p>設定は {@link EnvConfig} と同じく環境変数またはシステムプロパティで指定します。
+ * <pre>
+ * SIM_PORT                     待ち受けポート（既定: 8099）
+ * SIM_LATENCY_MS               応答までの基本の遅延（既定: 50）
+ * SIM_LATENCY_JITTER_MS        遅延に加えるランダムな揺らぎの上限（既定: 50）
+ * SIM_SLOW_RATE                極端に遅い応答を返す割合 0.0～1.0（既定: 0）
+ * SIM_SLOW_LATENCY_MS          極端に遅い応答の遅延（既定: 10000）
+ * SIM_ERROR_RATE               HTTP 500 を返す割合 0.0～1.0（既定: 0）
+ * SIM_RATE_LIMIT_INTERVAL_MS   この間隔より短い呼び出しに HTTP 429 を返す。0 で無効（既定: 1000）
+ * SIM_LARGE_CATEGORIES         大カテゴリ数（既定: 40）
+ * SIM_MEDIUM_PER_LARGE         大カテゴリあたりの中カテゴリ数（既定: 8）
+ * SIM_SMALL_PER_MEDIUM         中カテゴリあたりの小カテゴリ数（既定: 6）
+ * SIM_RECIPES_PER_RANKING      ランキング1件あたりのレシピ数（既定: 4）
+ * </pre>
+ * 実行例: mvn -Ploadtest compile exec:java -Dexec.mainClass=com.example.myrandomdishapp.RakutenApiSimulator -DSIM_ERROR_RATE=0.1
+ * <br>アプリ側は RAKUTEN_RANKING_BASE_URL=http://127.0.0.1:8099/CategoryRanking、
+ * RAKUTEN_CATEGORY_LIST_BASE_URL=http://127.0.0.1:8099/CategoryList と任意の RAKUTEN_APP_ID を指定して起動します。
+ */
+public final class RakutenApiSimulator {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    /** 画像URLのホスト。解決できない予約済みのドメインにし、実際の画像サーバへ取得に行かないようにする */
+    private static final String IMAGE_BASE_URL = "http://example.invalid/simulator/images/";
+
+    private static final String[] DISH_NAMES = {
+        "鶏の照り焼き", "肉じゃが", "豚の生姜焼き", "親子丼", "鮭のムニエル", "麻婆豆腐", "ハンバーグ", "かぼちゃの煮物",
+        "筑前煮", "オムライス", "ぶり大根", "野菜炒め", "だし巻き卵", "ポテトサラダ", "カレーライス", "豚汁",
+    };
+    private static final String[] MATERIALS = {
+        "鶏もも肉", "豚こま切れ肉", "牛こま切れ肉", "玉ねぎ", "人参", "じゃがいも", "キャベツ", "卵", "豆腐", "長ねぎ",
+        "醤油", "みりん", "酒", "砂糖", "塩", "こしょう", "だし汁", "生姜", "にんにく", "サラダ油",
+    };
+
+    private final long latencyMs = EnvConfig.getLong("SIM_LATENCY_MS", 50);
+    private final long latencyJitterMs = EnvConfig.getLong("SIM_LATENCY_JITTER_MS", 50);
+    private final double slowRate = EnvConfig.getDouble("SIM_SLOW_RATE", 0);
+    private final long slowLatencyMs = EnvConfig.getLong("SIM_SLOW_LATENCY_MS", 10_000);
+    private final double errorRate = EnvConfig.getDouble("SIM_ERROR_RATE", 0);
+    private final int largeCategories = (int) EnvConfig.getLong("SIM_LARGE_CATEGORIES", 40);
+    private final int mediumPerLarge = (int) EnvConfig.getLong("SIM_MEDIUM_PER_LARGE", 8);
+    private final int smallPerMedium = (int) EnvConfig.getLong("SIM_SMALL_PER_MEDIUM", 6);
+    private final int recipesPerRanking = (int) EnvConfig.getLong("SIM_RECIPES_PER_RANKING", 4);
+    private final TokenBucketRateLimiter rateLimiter;
+
+    private final byte[] mediumCategories;
+    private final byte[] smallCategories;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    private HttpServer server;
+
+    public RakutenApiSimulator() {
+        long rateLimitIntervalMs = EnvConfig.getLong("SIM_RATE_LIMIT_INTERVAL_MS", 1000);
+        this.rateLimiter = rateLimitIntervalMs > 0
+                ? new TokenBucketRateLimiter(rateLimitIntervalMs, TimeUnit.MILLISECONDS, 1)
+                : null;
+        this.mediumCategories = buildCategoryList("medium");
+        this.smallCategories = buildCategoryList("small");
+    }
+
+    public static void main(String[] args) throws IOException {
+        RakutenApiSimulator simulator = new RakutenApiSimulator();
+        simulator.start((int) EnvConfig.getLong("SIM_PORT", 8099));
+        System.out.println("楽天レシピAPIシミュレータを起動しました: http://127.0.0.1:" + simulator.getPort()
+                + "（小カテゴリ数: " + simulator.smallCategoryCount() + "）");
+        Executors.newSingleThreadScheduledExecutor().scheduleAtFixedRate(simulator::printStats, 10, 10, TimeUnit.SECONDS);
+    }
+
+    public void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.createContext("/CategoryList", exchange -> handle(exchange, this::categoryList));
+        server.createContext("/CategoryRanking", exchange -> handle(exchange, this::categoryRanking));
+        // 遅延中の応答でスレッドが埋まらないよう、必要なだけスレッドを増やす
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public int smallCategoryCount() {
+        return largeCategories * mediumPerLarge * smallPerMedium;
+    }
+
+    private void printStats() {
+        System.out.println("リクエスト: " + requests.sum() + ", 429: " + rateLimited.sum() + ", 500: " + errors.sum());
+    }
+
+    @FunctionalInterface
+    private interface Responder {
+        byte[] respond(HttpExchange exchange) throws IOException;
+    }
+
+    private void handle(HttpExchange exchange, Responder responder) throws IOException {
+        requests.increment();
+        try (exchange) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            sleep(random.nextDouble() < slowRate
+                    ? slowLatencyMs
+                    : latencyMs + (latencyJitterMs > 0 ? random.nextLong(latencyJitterMs + 1) : 0));
+
+            if (rateLimiter != null && rateLimiter.tryReserve(0, TimeUnit.NANOSECONDS) < 0) {
+                rateLimited.increment();
+                send(exchange, 429, "{\"error\":\"too_many_requests\",\"error_description\":\"number of allowed requests has been exceeded for this API. please try again soon.\"}"
+                        .getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            if (random.nextDouble() < errorRate) {
+                errors.increment();
+                send(exchange, 500, "{\"error\":\"system_error\",\"error_description\":\"api logic error\"}"
+                        .getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            byte[] body = responder.respond(exchange);
+            if (body == null) {
+                send(exchange, 400, "{\"error\":\"wrong_parameter\",\"error_description\":\"categoryId is not valid\"}"
+                        .getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            send(exchange, 200, body);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(body);
+            }
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private byte[] categoryList(HttpExchange exchange) {
+        String type = queryParam(exchange, "categoryType");
+        if ("medium".equals(type)) {
+            return mediumCategories;
+        }
+        if ("small".equals(type)) {
+            return smallCategories;
+        }
+        return null;
+    }
+
+    /**
+     * カテゴリIDは large-medium-small の順にIDを割り当てたときの値になります。
+     * 大カテゴリは 10 から、中カテゴリは 1000 から、小カテゴリは 100000 から連番です。
+     */
+    private byte[] buildCategoryList(String type) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator json = JSON_FACTORY.createGenerator(out)) {
+            json.writeStartObject();
+            json.writeObjectFieldStart("result");
+            json.writeArrayFieldStart(type);
+            for (int l = 0; l < largeCategories; l++) {
+                for (int m = 0; m < mediumPerLarge; m++) {
+                    int mediumId = 1000 + l * mediumPerLarge + m;
+                    if ("medium".equals(type)) {
+                        writeCategory(json, mediumId, "中カテゴリ" + mediumId, Integer.toString(10 + l), (10 + l) + "-" + mediumId);
+                        continue;
+                    }
+                    for (int s = 0; s < smallPerMedium; s++) {
+                        int smallId = 100_000 + (l * mediumPerLarge + m) * smallPerMedium + s;
+                        json.writeStartObject();
+                        json.writeNumberField("categoryId", smallId);
+                        json.writeStringField("categoryName", "小カテゴリ" + smallId);
+                        json.writeStringField("categoryUrl", "https://recipe.rakuten.co.jp/category/" + (10 + l) + "-" + mediumId + "-" + smallId + "/");
+                        // 小カテゴリの親IDは数値で返される
+                        json.writeNumberField("parentCategoryId", mediumId);
+                        json.writeEndObject();
+                    }
+                }
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+            json.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeCategory(JsonGenerator json, int id, String name, String parentId, String urlPath) throws IOException {
+        json.writeStartObject();
+        json.writeNumberField("categoryId", id);
+        json.writeStringField("categoryName", name);
+        json.writeStringField("categoryUrl", "https://recipe.rakuten.co.jp/category/" + urlPath + "/");
+        // 中カテゴリの親IDは文字列で返される
+        json.writeStringField("parentCategoryId", parentId);
+        json.writeEndObject();
+    }
+
+    /**
+     * カテゴリIDから決まるレシピを返します。同じカテゴリには常に同じ内容を返します。
+     * カテゴリ一覧に存在しないカテゴリIDには、実際のAPIと同じく HTTP 400 を返します。
+     */
+    private byte[] categoryRanking(HttpExchange exchange) throws IOException {
+        String categoryId = queryParam(exchange, "categoryId");
+        if (categoryId == null || !isKnownCategory(categoryId)) {
+            return null;
+        }
+        Random random = new Random(categoryId.hashCode());
+        ByteArrayOutputStream out = new ByteArrayOutputStream(2048);
+        try (JsonGenerator json = JSON_FACTORY.createGenerator(out)) {
+            json.writeStartObject();
+            json.writeArrayFieldStart("result");
+            for (int i = 0; i < recipesPerRanking; i++) {
+                long recipeId = 1_000_000_000L + random.nextInt(100_000_000);
+                String image = IMAGE_BASE_URL + Long.toHexString(random.nextLong()) + ".jpg";
+                json.writeStartObject();
+                json.writeStringField("foodImageUrl", image + "?thum=54");
+                json.writeStringField("mediumImageUrl", image + "?thum=55");
+                json.writeStringField("nickname", "シミュレータ");
+                json.writeStringField("rank", Integer.toString(i + 1));
+                json.writeStringField("recipeCost", "300円前後");
+                json.writeStringField("recipeDescription", "カテゴリ " + categoryId + " の人気レシピです。");
+                json.writeNumberField("recipeId", recipeId);
+                json.writeStringField("recipeIndication", "約15分");
+                json.writeArrayFieldStart("recipeMaterial");
+                int materialCount = 4 + random.nextInt(6);
+                for (int j = 0; j < materialCount; j++) {
+                    json.writeString(MATERIALS[random.nextInt(MATERIALS.length)]);
+                }
+                json.writeEndArray();
+                json.writeStringField("recipeTitle", DISH_NAMES[random.nextInt(DISH_NAMES.length)] + "（" + categoryId + "）");
+                json.writeStringField("recipeUrl", "https://recipe.rakuten.co.jp/recipe/" + recipeId + "/");
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 大カテゴリ、大-中、大-中-小 のいずれかの形式で、{@link #buildCategoryList(String)} と同じ親子関係を持つIDかどうかを判定します。
+     */
+    private boolean isKnownCategory(String categoryId) {
+        String[] parts = categoryId.split("-", -1);
+        if (parts.length > 3) {
+            return false;
+        }
+        int[] ids = new int[parts.length];
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                ids[i] = Integer.parseInt(parts[i]);
+            }
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        int large = ids[0] - 10;
+        if (large < 0 || large >= largeCategories) {
+            return false;
+        }
+        if (ids.length == 1) {
+            return true;
+        }
+        int medium = ids[1] - 1000 - large * mediumPerLarge;
+        if (medium < 0 || medium >= mediumPerLarge) {
+            return false;
+        }
+        if (ids.length == 2) {
+            return true;
+        }
+        int small = ids[2] - 100_000 - (large * mediumPerLarge + medium) * smallPerMedium;
+        return small >= 0 && small < smallPerMedium;
+    }
+
+    private static String queryParam(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && pair.substring(0, eq).equals(name)) {
+                return URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+}
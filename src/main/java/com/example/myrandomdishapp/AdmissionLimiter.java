@@ -0,0 +1,180 @@
+package com.example.myrandomdishapp;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 外部APIを呼び出す処理の同時実行数を制限する流入制御。
+ * 上限は処理時間に応じて増減させ（AIMD）、目標時間内に終わっている間は少しずつ増やし、
+ * 目標時間を超えた・失敗した場合は一定の割合で減らします。
+ *
+ * <p>上限に達している間のリクエストは有限の待ち行列で待たせ、待ち行列が埋まっている場合や
+ * 待ち時間の上限を過ぎた場合は {@link AdmissionRejectedException} で即座に断ります。
+ * 待機はスレッドを占有せず、{@link CompletableFuture} の完了として通知します。
+ */
+public class AdmissionLimiter {
+
+    // 上限を減らすときに掛ける割合
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetLatencyNanos;
+    private final int maxQueueSize;
+    private final long queueTimeoutMillis;
+
+    private final ArrayDeque<CompletableFuture<Permit>> waiters = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+
+    /**
+     * 処理1件分の実行許可。処理が終わったら {@link #release(boolean)} で必ず返却してください。
+     */
+    public final class Permit {
+        private final AtomicBoolean released = new AtomicBoolean();
+        private final long grantedAtNanos = System.nanoTime();
+
+        /**
+         * 許可を返却し、処理時間と結果を上限の調整に反映します。2回目以降の呼び出しは無視されます。
+         *
+         * @param success 処理が成功した場合は true
+         */
+        public void release(boolean success) {
+            if (released.compareAndSet(false, true)) {
+                onRelease(System.nanoTime() - grantedAtNanos, success, true);
+            }
+        }
+
+        /**
+         * 上限の調整に反映せずに許可を返却します。2回目以降の呼び出しは無視されます。
+         * APIを呼び出さずに手元で失敗した場合（サーキットブレーカーや利用制限による見送り）や、
+         * 処理時間が1回のAPI呼び出しの目標時間と比べられない場合（複数回の呼び出しをまとめた処理など）に使用します。
+         */
+        public void discard() {
+            if (released.compareAndSet(false, true)) {
+                onRelease(0, true, false);
+            }
+        }
+    }
+
+    /**
+     * @param initialLimit 同時実行数の初期上限
+     * @param minLimit 同時実行数の上限の下限
+     * @param maxLimit 同時実行数の上限の上限
+     * @param targetLatency 処理時間の目標。これを超えた処理があると上限を減らす
+     * @param maxQueueSize 待ち行列の長さの上限（0 の場合は待たせずに断る）
+     * @param queueTimeout 待ち行列で待つ時間の上限
+     * @param unit targetLatency と queueTimeout の単位
+     */
+    public AdmissionLimiter(int initialLimit, int minLimit, int maxLimit, long targetLatency,
+                            int maxQueueSize, long queueTimeout, TimeUnit unit) {
+        if (minLimit <= 0 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("同時実行数の上限は 1 <= min <= initial <= max を満たすように指定してください: "
+                    + minLimit + ", " + initialLimit + ", " + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetLatencyNanos = unit.toNanos(targetLatency);
+        this.maxQueueSize = Math.max(maxQueueSize, 0);
+        this.queueTimeoutMillis = unit.toMillis(queueTimeout);
+        this.limit = initialLimit;
+    }
+
+    /**
+     * 実行許可を取得します。上限に達している場合は待ち行列に入り、空きができた時点で完了します。
+     *
+     * @return 実行許可。待ち行列が埋まっている、または待ち時間の上限を過ぎた場合は {@link AdmissionRejectedException} で失敗します
+     */
+    public CompletableFuture<Permit> acquire() {
+        CompletableFuture<Permit> waiter;
+        synchronized (this) {
+            if (inFlight < (int) limit && waiters.isEmpty()) {
+                inFlight++;
+                return CompletableFuture.completedFuture(new Permit());
+            }
+            if (waiters.size() >= maxQueueSize) {
+                return CompletableFuture.failedFuture(new AdmissionRejectedException("同時実行数の上限に達しています。"));
+            }
+            waiter = new CompletableFuture<>();
+            waiters.addLast(waiter);
+        }
+        CompletableFuture.delayedExecutor(queueTimeoutMillis, TimeUnit.MILLISECONDS).execute(() -> {
+            // 待ち行列から外してから失敗させ、失敗を受け取った側から見て待ち行列に残っていないようにする。
+            // 既に外されていれば許可が渡されている
+            boolean removed;
+            synchronized (this) {
+                removed = waiters.remove(waiter);
+            }
+            if (removed) {
+                waiter.completeExceptionally(new AdmissionRejectedException("実行許可の待ち時間が上限を超えました。"));
+            }
+        });
+        return waiter;
+    }
+
+    /**
+     * 待たずに実行許可を取得します。
+     *
+     * @return 実行許可、または上限に達している（待っているリクエストがある）場合は null
+     */
+    public synchronized Permit tryAcquire() {
+        if (inFlight < (int) limit && waiters.isEmpty()) {
+            inFlight++;
+            return new Permit();
+        }
+        return null;
+    }
+
+    private void onRelease(long latencyNanos, boolean success, boolean adjust) {
+        List<CompletableFuture<Permit>> granted;
+        synchronized (this) {
+            boolean saturated = inFlight >= (int) limit;
+            inFlight--;
+            if (adjust) {
+                if (!success || latencyNanos > targetLatencyNanos) {
+                    limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+                } else if (saturated) {
+                    // 上限まで使い切っていて、なお目標時間内に終わっている場合だけ増やす
+                    limit = Math.min(maxLimit, limit + 1.0 / limit);
+                }
+            }
+            granted = new ArrayList<>();
+            while (inFlight < (int) limit && !waiters.isEmpty()) {
+                granted.add(waiters.pollFirst());
+                inFlight++;
+            }
+        }
+        // 後続の処理が同期的に実行されるため、許可の通知はロックの外で行う
+        for (CompletableFuture<Permit> waiter : granted) {
+            Permit permit = new Permit();
+            if (!waiter.complete(permit)) {
+                permit.discard();
+            }
+        }
+    }
+
+    /**
+     * @return 現在の同時実行数の上限
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * @return 実行中の処理の数
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return 待ち行列で待っているリクエストの数
+     */
+    public synchronized int getQueued() {
+        return waiters.size();
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.myrandomdishapp;
+
+/**
+ * 同時実行数の上限と待ち行列が埋まっている、または待ち時間の上限を過ぎたため、処理を受け付けなかったことを表す例外。
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public AdmissionRejectedException(String message) {
+        super(message, null, false, false); // 過負荷時に頻発するため、スタックトレースは取得しない
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.myrandomdishapp;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * 中・小カテゴリの親子関係を int 配列で保持する不変のカテゴリ索引。
+ * 小カテゴリごとの完全なカテゴリパス（largeID-mediumID-smallID）は構築時に一度だけ生成しておき、
+ * ランダムな選択は配列への1回のアクセスで行えます。
+ */
+public final class CategoryIndex {
+
+    private static final EventLog LOG = EventLog.get();
+
+    // 中カテゴリID（昇順）と、それぞれの親（大カテゴリ）ID
+    private final int[] mediumIds;
+    private final int[] mediumParents;
+    // 小カテゴリID（昇順）と、それぞれの親（中カテゴリ）ID
+    private final int[] smallIds;
+    private final int[] smallParents;
+    // smallIds と同じ並びの完全なカテゴリパス。親が見つからない小カテゴリは null
+    private final String[] fullPathsBySmall;
+    // 完全なカテゴリパスを生成できた小カテゴリのパスだけを詰めた配列（ランダム選択用）
+    private final String[] paths;
+
+    /**
+     * カテゴリIDと親カテゴリIDの組を順に追加するための可変長バッファ。索引の構築時にだけ使用します。
+     */
+    public static final class IdPairs {
+        private int[] ids = new int[64];
+        private int[] parents = new int[64];
+        private int size;
+
+        public void add(int id, int parentId) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                parents = Arrays.copyOf(parents, size * 2);
+            }
+            ids[size] = id;
+            parents[size] = parentId;
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+
+    private CategoryIndex(int[] mediumIds, int[] mediumParents, int[] smallIds, int[] smallParents) {
+        this.mediumIds = mediumIds;
+        this.mediumParents = mediumParents;
+        this.smallIds = smallIds;
+        this.smallParents = smallParents;
+        this.fullPathsBySmall = new String[smallIds.length];
+
+        String[] resolved = new String[smallIds.length];
+        int resolvedCount = 0;
+        for (int i = 0; i < smallIds.length; i++) {
+            int mediumId = smallParents[i];
+            int m = Arrays.binarySearch(mediumIds, mediumId);
+            if (m < 0) {
+                LOG.warn("category.parent_missing", "msg", "中カテゴリ（親）が見つかりません", "mediumId", mediumId, "smallId", smallIds[i]);
+                continue;
+            }
+            // largeID-mediumID-smallID の形式で結合しておく
+            String path = mediumParents[m] + "-" + mediumId + "-" + smallIds[i];
+            fullPathsBySmall[i] = path;
+            resolved[resolvedCount++] = path;
+        }
+        this.paths = Arrays.copyOf(resolved, resolvedCount);
+    }
+
+    /**
+     * 中・小カテゴリの親子関係から索引を構築します。
+     *
+     * @param medium 中カテゴリID → 親（大カテゴリ）ID の組
+     * @param small 小カテゴリID → 親（中カテゴリ）ID の組
+     * @return 構築した索引
+     */
+    public static CategoryIndex build(IdPairs medium, IdPairs small) {
+        int[][] m = sortedById(medium);
+        int[][] s = sortedById(small);
+        return new CategoryIndex(m[0], m[1], s[0], s[1]);
+    }
+
+    private static int[][] sortedById(IdPairs pairs) {
+        // ID と親IDを1つの long にまとめてソートし、2つの配列に分け直す
+        long[] packed = new long[pairs.size];
+        for (int i = 0; i < pairs.size; i++) {
+            packed[i] = ((long) pairs.ids[i] << 32) | (pairs.parents[i] & 0xFFFFFFFFL);
+        }
+        Arrays.sort(packed);
+        int[] ids = new int[packed.length];
+        int[] parents = new int[packed.length];
+        int n = 0;
+        for (long p : packed) {
+            int id = (int) (p >> 32);
+            if (n > 0 && ids[n - 1] == id) {
+                continue; // 重複したIDは最初のものを採用する
+            }
+            ids[n] = id;
+            parents[n] = (int) p;
+            n++;
+        }
+        return new int[][] { Arrays.copyOf(ids, n), Arrays.copyOf(parents, n) };
+    }
+
+    /**
+     * @return 完全なカテゴリパスを生成できた小カテゴリの数
+     */
+    public int size() {
+        return paths.length;
+    }
+
+    /**
+     * @param random 乱数生成器
+     * @return ランダムに選ばれた完全なカテゴリパス。小カテゴリがない場合は null
+     */
+    public String randomPath(RandomGenerator random) {
+        return paths.length == 0 ? null : paths[random.nextInt(paths.length)];
+    }
+
+    /**
+     * @param index 0 以上 {@link #size()} 未満の位置
+     * @return その位置の完全なカテゴリパス
+     */
+    public String pathAt(int index) {
+        return paths[index];
+    }
+
+    /**
+     * @param smallCategoryId 小カテゴリID
+     * @return 完全なカテゴリパス、または見つからない場合は null
+     */
+    public String fullPathOf(int smallCategoryId) {
+        int i = Arrays.binarySearch(smallIds, smallCategoryId);
+        return i < 0 ? null : fullPathsBySmall[i];
+    }
+
+    /**
+     * @return すべての完全なカテゴリパス（変更不可）
+     */
+    public List<String> allPaths() {
+        return List.of(paths);
+    }
+
+    public int mediumCount() {
+        return mediumIds.length;
+    }
+
+    public int smallCount() {
+        return smallIds.length;
+    }
+
+    // スナップショットの保存用。配列は複製せずに渡すため、呼び出し側で変更しないこと
+    int[] mediumIds() {
+        return mediumIds;
+    }
+
+    int[] mediumParents() {
+        return mediumParents;
+    }
+
+    int[] smallIds() {
+        return smallIds;
+    }
+
+    int[] smallParents() {
+        return smallParents;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.myrandomdishapp;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 外部APIの障害時に呼び出しを一時的に止めるサーキットブレーカー。
+ *
+ * <ul>
+ * <li>CLOSED: 通常状態。連続した失敗が閾値に達すると OPEN になります。</li>
+ * <li>OPEN: 呼び出しを行わずに即座に失敗させます。一定時間が経過すると HALF_OPEN になります。</li>
+ * <li>HALF_OPEN: 試行として1件だけ呼び出しを許可し、成功すれば CLOSED、失敗すれば再び OPEN に戻ります。</li>
+ * </ul>
+ */
+public class CircuitBreaker {
+
+    private static final EventLog LOG = EventLog.get();
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openDurationNanos;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtNanos;
+    private boolean trialInFlight;
+
+    /**
+     * @param name ログに表示する名前
+     * @param failureThreshold OPEN にする連続失敗回数
+     * @param openDuration OPEN を維持する時間
+     * @param unit openDuration の単位
+     */
+    public CircuitBreaker(String name, int failureThreshold, long openDuration, TimeUnit unit) {
+        if (failureThreshold <= 0) {
+            throw new IllegalArgumentException("failureThreshold は1以上を指定してください: " + failureThreshold);
+        }
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openDurationNanos = unit.toNanos(openDuration);
+    }
+
+    /**
+     * 呼び出しを行ってよいかを判定します。true が返された場合、呼び出し側は結果を
+     * {@link #recordSuccess()}・{@link #recordFailure()}・{@link #recordIgnored()} のいずれかで必ず報告してください。
+     *
+     * @return 呼び出してよい場合は true
+     */
+    public synchronized boolean tryAcquirePermission() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAtNanos < openDurationNanos) {
+                    return false;
+                }
+                transitionTo(State.HALF_OPEN);
+                trialInFlight = true;
+                return true;
+            default:
+                // HALF_OPEN 中は同時に1件だけ試行する
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+        }
+    }
+
+    /**
+     * 呼び出しが成功したことを報告します。
+     */
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        trialInFlight = false;
+        if (state != State.CLOSED) {
+            transitionTo(State.CLOSED);
+        }
+    }
+
+    /**
+     * 呼び出しが失敗（エラー応答・タイムアウトなど）したことを報告します。
+     */
+    public synchronized void recordFailure() {
+        trialInFlight = false;
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            openedAtNanos = System.nanoTime();
+            transitionTo(State.OPEN);
+        }
+    }
+
+    /**
+     * 外部APIの状態とは無関係な理由（利用制限による見送りなど）で呼び出しが行われなかったことを報告します。
+     */
+    public synchronized void recordIgnored() {
+        trialInFlight = false;
+    }
+
+    /**
+     * @return 現在の状態。OPEN の維持時間が過ぎていても、次の呼び出しまでは OPEN のまま報告します
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void transitionTo(State next) {
+        LOG.warn("circuit.transition", "msg", "サーキットブレーカーの状態が変わりました", "name", name,
+                "from", state.name(), "to", next.name(), "consecutiveFailures", consecutiveFailures);
+        state = next;
+    }
+}
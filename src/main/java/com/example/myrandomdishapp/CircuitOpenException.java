@@ -0,0 +1,13 @@
+package com.example.myrandomdishapp;
+
+/**
+ * サーキットブレーカーが開いているため、APIを呼び出さなかったことを表す例外。
+ */
+public class CircuitOpenException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
@@ -1,142 +1,725 @@
 package com.example.myrandomdishapp;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 
-import java.util.Collections;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
-import java.util.ArrayList;
-import java.util.Map;
-import java.util.HashMap;
-import java.util.Random;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.random.RandomGenerator;
 
-import org.json.JSONObject;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
 @Controller
 public class DishController {
 
+    // プールにこの数以上のカテゴリが揃ったら、リクエスト処理ではAPIを呼ばずにプールから選ぶ
+    private static final long POOL_WARM_CATEGORIES = EnvConfig.getLong("RECIPE_POOL_WARM_CATEGORIES", 50);
+    // バックグラウンドでのプール更新の間隔（ミリ秒）。APIの利用枠の残りはリクエスト処理に回す
+    private static final long POOL_INDEXER_INTERVAL_MS = EnvConfig.getLong("RECIPE_POOL_INDEXER_INTERVAL_MS", RecipeApiClient.REQUEST_INTERVAL_MS * 2);
+    // スナップショットを保存する間隔（分）
+    private static final long SNAPSHOT_INTERVAL_MINUTES = EnvConfig.getLong("SNAPSHOT_INTERVAL_MINUTES", 10);
+    // 終了時に、実行中のバックグラウンド処理の完了を待つ時間（秒）
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = EnvConfig.getLong("SHUTDOWN_TIMEOUT_SECONDS", 10);
+
+    // カテゴリ一覧を再取得する間隔（時間）。再起動しなくてもカテゴリの追加・削除が反映される
+    private static final long CATEGORY_RELOAD_HOURS = EnvConfig.getLong("CATEGORY_RELOAD_HOURS", 24);
+    // /api/generateDish の応答期限（ミリ秒）。APIの応答がこれより遅い場合は取得済みのレシピから返す
+    private static final long DISH_RESPONSE_DEADLINE_MS = EnvConfig.getLong("DISH_RESPONSE_DEADLINE_MS", 2000);
+    // /api/generateDishes で一度に生成できる献立の上限
+    private static final long DISH_BATCH_MAX_COUNT = EnvConfig.getLong("DISH_BATCH_MAX_COUNT", 21);
+    // /api/generateDish の材料の条件（include と exclude の合計）として指定できる語の数の上限
+    private static final long DISH_FILTER_MAX_TERMS = EnvConfig.getLong("DISH_FILTER_MAX_TERMS", 8);
+
+    // APIを呼び出す献立生成の同時実行数の上限（初期値・下限・上限）。処理時間に応じてこの範囲で増減する
+    private static final long ADMISSION_INITIAL_LIMIT = EnvConfig.getLong("ADMISSION_INITIAL_LIMIT", 20);
+    private static final long ADMISSION_MIN_LIMIT = EnvConfig.getLong("ADMISSION_MIN_LIMIT", 2);
+    private static final long ADMISSION_MAX_LIMIT = EnvConfig.getLong("ADMISSION_MAX_LIMIT", 200);
+    // この時間を超えたAPI呼び出しがあると同時実行数の上限を下げる（ミリ秒）
+    private static final long ADMISSION_TARGET_LATENCY_MS = EnvConfig.getLong("ADMISSION_TARGET_LATENCY_MS", DISH_RESPONSE_DEADLINE_MS / 2);
+    // 上限に達している間に待たせるリクエストの数と、待たせる時間の上限（ミリ秒）
+    private static final long ADMISSION_QUEUE_SIZE = EnvConfig.getLong("ADMISSION_QUEUE_SIZE", 50);
+    private static final long ADMISSION_QUEUE_TIMEOUT_MS = EnvConfig.getLong("ADMISSION_QUEUE_TIMEOUT_MS", DISH_RESPONSE_DEADLINE_MS / 4);
+    // 過負荷で断ったときに Retry-After ヘッダで返す秒数
+    private static final long ADMISSION_RETRY_AFTER_SECONDS = EnvConfig.getLong("ADMISSION_RETRY_AFTER_SECONDS", 2);
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final EventLog LOG = EventLog.get();
+
+    // 縮小画像に付けるキャッシュヘッダ。画像はレシピIDごとに変わらないため、1年間キャッシュさせる
+    private static final String IMAGE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+    // Tomcat の sendfile を使うためのリクエスト属性
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    private static final byte[] DISHES_START = "{\"dishes\":[".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DISHES_END = "]}".getBytes(StandardCharsets.UTF_8);
+    private static final String OVERLOADED_MESSAGE = "ただいま混み合っています。少し待ってからもう一度！";
+    // 内容の変わらないエラー応答のボディは起動時に生成しておき、過負荷や障害の最中に毎回生成しないようにする
+    private static final byte[] OVERLOADED_JSON = DishPayload.messageJson(OVERLOADED_MESSAGE);
+    private static final byte[] TOO_MANY_TERMS_JSON = DishPayload.messageJson("材料の条件は合わせて" + DISH_FILTER_MAX_TERMS + "個まで指定できます。");
+    private static final byte[] PATH_ERROR_JSON = DishPayload.messageJson("カテゴリパス生成エラー。もう一度！");
+    private static final byte[] API_ERROR_JSON = DishPayload.messageJson("料理生成中にエラーが発生しました。");
+    private static final byte[] NO_MATCH_JSON = DishPayload.messageJson("条件に合う料理が見つかりませんでした。条件を変えてもう一度！");
+    private static final byte[] DEADLINE_JSON = DishPayload.messageJson("献立の取得に時間がかかっています。もう一度！");
+
+    /**
+     * 献立の提供状態。
+     */
+    private enum Status {
+        LOADING, READY, ERROR
+    }
+
+    /**
+     * リクエスト処理スレッドから参照されるコントローラの状態。
+     * 不変オブジェクトとして丸ごと差し替えることで、読み取り側はロックなしで一貫した状態を参照できます。
+     *
+     * @param status 提供状態
+     * @param displayMessage 画面に表示するメッセージ
+     * @param categoryIndex 献立の選択に使用するカテゴリ索引（READY 以外では null の場合あり）
+     */
+    private record State(Status status, String displayMessage, CategoryIndex categoryIndex) {
+    }
+
     private final RecipeApiClient apiClient;
-    private Random random;
-    private ScheduledExecutorService executor;
+    private final RecipePool recipePool;
+    private final RecipePoolIndexer poolIndexer;
+    private final RecipeSnapshotStore snapshotStore;
+    private final ScheduledExecutorService executor;
+    private final DishMetrics metrics;
+    private final AdmissionLimiter admission;
+    // 画像プロキシを使わない設定（IMAGE_PROXY_ENABLED=false）の場合は null
+    private final ImageCache imageCache;
+    // /api/generateDish の応答期限（ミリ秒）
+    private final long responseDeadlineMillis;
+
+    private volatile State state = new State(Status.LOADING, "カテゴリデータをロード中...", null);
 
-    private List<String> availableSmallCategoryIds;
-    private List<String> currentDisplayMessage;
+    @Autowired
+    public DishController(MeterRegistry meterRegistry) {
+        this(new DishMetrics(meterRegistry));
+    }
+
+    private DishController(DishMetrics metrics) {
+        this(metrics, new RecipeApiClient(metrics), new RecipePool(), new RecipeSnapshotStore(),
+                ImageCache.ENABLED ? new ImageCache() : null, DISH_RESPONSE_DEADLINE_MS);
+    }
 
-    public DishController() {
-        this.apiClient = new RecipeApiClient();
-        this.random = new Random();
+    /**
+     * 依存するオブジェクトを指定してコントローラを作成します。テストでAPIクライアントを差し替えるために使用します。
+     *
+     * @param metrics 計測値の記録先
+     * @param apiClient 楽天レシピAPIのクライアント
+     * @param recipePool レシピプール
+     * @param snapshotStore スナップショットの保存先
+     * @param imageCache 画像キャッシュ（画像プロキシを使わない場合は null）
+     * @param responseDeadlineMillis /api/generateDish の応答期限（ミリ秒）
+     */
+    DishController(DishMetrics metrics, RecipeApiClient apiClient, RecipePool recipePool, RecipeSnapshotStore snapshotStore,
+                   ImageCache imageCache, long responseDeadlineMillis) {
+        this.metrics = metrics;
+        this.apiClient = apiClient;
+        this.recipePool = recipePool;
+        this.poolIndexer = new RecipePoolIndexer(apiClient, recipePool);
+        this.snapshotStore = snapshotStore;
+        this.imageCache = imageCache;
+        this.responseDeadlineMillis = responseDeadlineMillis;
         this.executor = Executors.newSingleThreadScheduledExecutor();
+        this.admission = new AdmissionLimiter((int) ADMISSION_INITIAL_LIMIT, (int) ADMISSION_MIN_LIMIT, (int) ADMISSION_MAX_LIMIT,
+                ADMISSION_TARGET_LATENCY_MS, (int) ADMISSION_QUEUE_SIZE, ADMISSION_QUEUE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+        metrics.registerGauge("dish.pool.categories", "レシピプールに登録されているカテゴリ数", recipePool::categoryCount);
+        metrics.registerGauge("dish.categories.paths", "選択対象の小カテゴリ数", () -> {
+            CategoryIndex index = state.categoryIndex();
+            return index == null ? 0 : index.size();
+        });
+        metrics.registerGauge("dish.admission.limit", "APIを呼び出す献立生成の同時実行数の上限", admission::getLimit);
+        metrics.registerGauge("dish.admission.inflight", "APIを呼び出している献立生成の数", admission::getInFlight);
+        metrics.registerGauge("dish.admission.queued", "同時実行数の空きを待っている献立生成の数", admission::getQueued);
+        if (imageCache != null) {
+            metrics.registerGauge("dish.images.files", "ディスクに保存されている縮小画像の数", imageCache::size);
+            metrics.registerGauge("dish.images.bytes", "ディスクに保存されている縮小画像の合計サイズ", imageCache::totalBytes);
+        }
+        metrics.registerGauge("dish.log.dropped", "バッファが一杯だったために捨てたログイベントの累計", LOG::getDroppedCount);
+
+        // 前回のスナップショットがあれば即座に復元し、APIからの最新データはバックグラウンドで取得する
+        restoreFromSnapshot();
+        // カテゴリは起動直後に取得し、その後も定期的に取得し直す
+        executor.scheduleWithFixedDelay(this::loadAllCategoryData, 0, CATEGORY_RELOAD_HOURS, TimeUnit.HOURS);
+        // カテゴリのロード完了後（同じスレッド上で順に実行される）にレシピプールの構築を始める
+        poolIndexer.start(executor, POOL_INDEXER_INTERVAL_MS);
+        executor.scheduleWithFixedDelay(this::saveSnapshot, SNAPSHOT_INTERVAL_MINUTES, SNAPSHOT_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * スナップショットファイルからカテゴリ構成とレシピプールを復元します。
+     */
+    private void restoreFromSnapshot() {
+        long start = System.nanoTime();
+        RecipeSnapshotStore.Snapshot snapshot = snapshotStore.load();
+        if (snapshot == null || snapshot.categoryIndex().size() == 0) {
+            return;
+        }
+        apiClient.restoreCategories(snapshot.categoryIndex());
+        snapshot.pool().forEach(recipePool::restore);
+        applyLoadedCategories();
+        LOG.info("snapshot.restored", "msg", "スナップショットを復元しました", "poolCategories", recipePool.categoryCount(),
+                "elapsedMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), "path", snapshotStore.getPath().toString());
+    }
+
+    /**
+     * 現在のカテゴリ構成とレシピプールをスナップショットファイルに保存します。
+     */
+    private void saveSnapshot() {
+        if (!apiClient.areCategoriesLoaded()) {
+            return;
+        }
+        try {
+            snapshotStore.save(apiClient.getCategoryIndex(), recipePool.entries());
+        } catch (Exception e) {
+            LOG.warn("snapshot.save_failed", "msg", "スナップショットの保存に失敗しました", "error", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        if (imageCache != null) {
+            imageCache.shutdown();
+        }
+        try {
+            // 実行中のプール更新やカテゴリの再ロードが終わってから保存し、更新途中の状態を書き出さないようにする
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOG.warn("shutdown.timeout", "msg", "バックグラウンド処理の終了を待ちきれませんでした。", "timeoutSeconds", SHUTDOWN_TIMEOUT_SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        saveSnapshot();
+    }
+
+    /**
+     * ロード済みのカテゴリを献立の選択対象として反映します。
+     * 新しい索引を含む状態を一度に差し替えるため、処理中のリクエストを止める必要はありません。
+     *
+     * @return 小カテゴリが1件以上あれば true
+     */
+    private boolean applyLoadedCategories() {
+        CategoryIndex index = apiClient.getCategoryIndex();
+        if (index == null || index.size() == 0) {
+            return false;
+        }
+        poolIndexer.updateCategoryPaths(index.allPaths());
+        // 削除されたカテゴリのレシピは、以降の献立として選ばれないようにプールから取り除く
+        int removed = recipePool.retainCategories(index.allPaths());
+        if (removed > 0) {
+            LOG.info("pool.pruned", "msg", "カテゴリ一覧にないカテゴリをレシピプールから取り除きました", "categories", removed);
+        }
+        this.state = new State(Status.READY, "ボタンを押して献立をゲット！", index);
+        return true;
+    }
 
-        loadAllCategoryData();
-        this.currentDisplayMessage = Collections.singletonList("カテゴリデータをロード中...");
+    /**
+     * カテゴリのロード失敗を表示メッセージに反映します。
+     * 既にロード済み（またはスナップショットから復元済み）のデータで提供中の場合は、そのまま提供を続けます。
+     */
+    private void reportLoadFailure(String message) {
+        if (state.status() == Status.READY) {
+            LOG.warn("category.load.keep_previous", "msg", "ロード済みのカテゴリデータで提供を続けます。");
+            return;
+        }
+        this.state = new State(Status.ERROR, message, null);
     }
 
     private void loadAllCategoryData() {
-        executor.schedule(() -> {
-            try {
-                apiClient.loadAllCategories();
-
-                if (apiClient.areCategoriesLoaded()) {
-                    Map<String, JSONObject> smallCats = apiClient.getSmallCategoryData();
-                    if (smallCats != null && !smallCats.isEmpty()) {
-                        this.availableSmallCategoryIds = new ArrayList<>(smallCats.keySet());
-                        Collections.shuffle(this.availableSmallCategoryIds);
-                        System.out.println("全カテゴリデータのロードが完了しました。小カテゴリ数: " + this.availableSmallCategoryIds.size());
-                        this.currentDisplayMessage = Collections.singletonList("ボタンを押して献立をゲット！");
-                    } else {
-                        System.err.println("小カテゴリデータが空または取得できませんでした。");
-                        this.currentDisplayMessage = Collections.singletonList("カテゴリデータ取得失敗。");
-                    }
+        long start = System.nanoTime();
+        boolean loaded = false;
+        try {
+            CategoryIndex previous = apiClient.getCategoryIndex();
+            apiClient.loadAllCategories();
+
+            if (apiClient.areCategoriesLoaded()) {
+                if (apiClient.getCategoryIndex() == previous) {
+                    // 取得結果が空で、ロード済みの索引が維持された
+                    reportLoadFailure("カテゴリデータ取得失敗。");
+                } else if (applyLoadedCategories()) {
+                    loaded = true;
+                    LOG.info("category.applied", "msg", "全カテゴリデータのロードが完了しました。", "paths", state.categoryIndex().size());
+                    saveSnapshot();
                 } else {
-                    System.err.println("カテゴリデータが完全にロードされませんでした。");
-                    this.currentDisplayMessage = Collections.singletonList("カテゴリロードエラー。");
+                    LOG.warn("category.load.empty", "msg", "小カテゴリデータが空または取得できませんでした。");
+                    reportLoadFailure("カテゴリデータ取得失敗。");
                 }
-            } catch (Exception e) {
-                System.err.println("カテゴリデータのロード中にエラーが発生しました: " + e.getMessage());
-                e.printStackTrace();
-                this.currentDisplayMessage = Collections.singletonList("カテゴリロードエラー。詳細: " + e.getMessage());
+            } else {
+                LOG.warn("category.load.incomplete", "msg", "カテゴリデータが完全にロードされませんでした。");
+                reportLoadFailure("カテゴリロードエラー。");
             }
-        }, 0, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            LOG.error("category.load.failed", e, "msg", "カテゴリデータのロード中にエラーが発生しました");
+            reportLoadFailure("カテゴリロードエラー。詳細: " + e.getMessage());
+        } finally {
+            metrics.recordCategoryLoad(loaded, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * レシピ画像の縮小版を返します。保存済みのファイルは Tomcat の sendfile でカーネルから直接送り、
+     * 長期間キャッシュできるヘッダを付けます（同じレシピIDの画像は変わらないため）。
+     * 未取得の画像は取得を始めたうえで、今回は元の画像URLに転送します（リクエスト処理スレッドで取得を待たない）。
+     * 画像プロキシを使わない設定の場合は、常に元の画像URLに転送します。
+     *
+     * @param recipeId レシピID
+     */
+    @GetMapping("/img/{recipeId}")
+    public void serveImage(@PathVariable long recipeId, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // 応答を決める前にファイルを開き、直前に追い出されて読めない場合は未取得として扱う
+        FileChannel channel = null;
+        Path path = imageCache != null ? imageCache.cached(recipeId) : null;
+        if (path != null) {
+            try {
+                channel = FileChannel.open(path, StandardOpenOption.READ);
+            } catch (IOException e) {
+                imageCache.invalidate(recipeId);
+            }
+        }
+        if (channel == null) {
+            String sourceUrl = recipePool.imageUrlOf(recipeId);
+            if (sourceUrl == null) {
+                metrics.recordResponse("image", HttpStatus.NOT_FOUND.value(), "none");
+                response.sendError(HttpStatus.NOT_FOUND.value());
+                return;
+            }
+            if (imageCache != null) {
+                imageCache.fetch(recipeId, sourceUrl);
+            }
+            metrics.recordResponse("image", HttpStatus.FOUND.value(), "origin");
+            response.sendRedirect(sourceUrl);
+            return;
+        }
+
+        try (FileChannel file = channel) {
+            long size = file.size();
+            metrics.recordResponse("image", HttpStatus.OK.value(), "cache");
+            response.setContentType(MediaType.IMAGE_JPEG_VALUE);
+            response.setContentLengthLong(size);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, IMAGE_CACHE_CONTROL);
+            if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+                // 本文は書かずに、ファイルの送信を Tomcat に任せる（追い出したファイルはすぐには削除されない）
+                request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+                request.setAttribute(SENDFILE_START, 0L);
+                request.setAttribute(SENDFILE_END, size);
+                return;
+            }
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            while (position < size) {
+                long sent = file.transferTo(position, size - position, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+            }
+        }
     }
 
     @GetMapping("/")
     public String showDishPage(Model model) {
-        model.addAttribute("dishName", currentDisplayMessage.get(0));
+        model.addAttribute("dishName", state.displayMessage());
         return "index";
     }
 
+    /**
+     * ランダムな献立を1件返します。
+     * APIの応答はリクエスト処理スレッドを占有せずに待ち、DISH_RESPONSE_DEADLINE_MS を過ぎた場合は
+     * 取得済みのレシピから選んで応答します。
+     * APIを呼び出すリクエストが同時実行数の上限を超えて待ちきれない場合は、取得済みのレシピがなければ
+     * Retry-After ヘッダ付きの 503 をすぐに返します。
+     *
+     * @param include 材料にすべて含むこと（例: include=鶏肉,玉ねぎ）。指定した場合は取得済みのレシピからのみ選びます
+     * @param exclude 材料にいずれも含まないこと（例: exclude=卵）。include と合わせて DISH_FILTER_MAX_TERMS 個まで指定できます
+     */
     @PostMapping("/api/generateDish")
     @ResponseBody
-    public ResponseEntity<Map<String, String>> generateDishApi() {
-        Map<String, String> response = new HashMap<>();
+    public CompletableFuture<ResponseEntity<byte[]>> generateDishApi(
+            @RequestParam(required = false) List<String> include,
+            @RequestParam(required = false) List<String> exclude) {
+        State current = state; // リクエスト中は同じ状態を参照する
 
-        if (availableSmallCategoryIds == null || availableSmallCategoryIds.isEmpty() || currentDisplayMessage.get(0).contains("ロード中") || currentDisplayMessage.get(0).contains("エラー")) {
-            response.put("dishName", currentDisplayMessage.get(0));
-            response.put("dishImageUrl", "");
-            response.put("recipeDescription", "");
-            response.put("recipeMaterial", "");
-            response.put("recipeUrl", ""); // レシピURLも空で返す
-            return new ResponseEntity<>(response, HttpStatus.SERVICE_UNAVAILABLE);
+        if (current.status() != Status.READY) {
+            return CompletableFuture.completedFuture(counted("none", messageDishResponse(HttpStatus.SERVICE_UNAVAILABLE, current.displayMessage())));
         }
 
-        try {
-            String selectedSmallCategoryId = availableSmallCategoryIds.get(random.nextInt(availableSmallCategoryIds.size()));
-            String fullCategoryIdForRanking = apiClient.getFullCategoryIdPath(selectedSmallCategoryId);
-
-            if (fullCategoryIdForRanking != null) {
-                List<Map<String, String>> recipesData = apiClient.getDishAndImageAndDetailsFromCategoryRanking(fullCategoryIdForRanking);
-
-                if (recipesData != null && !recipesData.isEmpty()) {
-                    Map<String, String> selectedRecipe = recipesData.get(random.nextInt(recipesData.size()));
-                    String finalDishName = selectedRecipe.get("recipeTitle");
-                    String finalDishImageUrl = selectedRecipe.get("foodImageUrl");
-                    String finalDescription = selectedRecipe.get("recipeDescription");
-                    String finalMaterials = selectedRecipe.get("recipeMaterial");
-                    String finalRecipeUrl = selectedRecipe.get("recipeUrl"); // レシピURLを取得
-
-                    response.put("dishName", finalDishName);
-                    response.put("dishImageUrl", finalDishImageUrl != null ? finalDishImageUrl : "");
-                    response.put("recipeDescription", finalDescription != null ? finalDescription : "説明はありません。");
-                    response.put("recipeMaterial", finalMaterials != null ? finalMaterials : "材料は不明です。");
-                    response.put("recipeUrl", finalRecipeUrl != null ? finalRecipeUrl : ""); // レシピURLをレスポンスに含める
-                    
-                    System.out.println("選ばれた献立 (API): " + finalDishName + " (完全カテゴリID: " + fullCategoryIdForRanking + ", 画像URL: " + finalDishImageUrl + ", URL: " + finalRecipeUrl + ")");
-                    return new ResponseEntity<>(response, HttpStatus.OK);
-                } else {
-                    response.put("dishName", "このカテゴリ（" + fullCategoryIdForRanking + "）には料理がありませんでした。もう一度！");
-                    response.put("dishImageUrl", "");
-                    response.put("recipeDescription", "");
-                    response.put("recipeMaterial", "");
-                    response.put("recipeUrl", "");
-                    System.err.println("カテゴリID " + fullCategoryIdForRanking + " からレシピが取得できませんでした。");
-                    return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
+        List<String> includeTerms = nonBlank(include);
+        List<String> excludeTerms = nonBlank(exclude);
+        if (includeTerms.size() + excludeTerms.size() > DISH_FILTER_MAX_TERMS) {
+            return CompletableFuture.completedFuture(counted("none", messageDishResponse(HttpStatus.BAD_REQUEST, TOO_MANY_TERMS_JSON)));
+        }
+        if (!includeTerms.isEmpty() || !excludeTerms.isEmpty()) {
+            return CompletableFuture.completedFuture(filteredDishResponse(includeTerms, excludeTerms));
+        }
+
+        // プールが十分に温まっていれば、APIを呼ばずにプールから選ぶ
+        if (recipePool.categoryCount() >= POOL_WARM_CATEGORIES) {
+            ResponseEntity<byte[]> pooled = pooledDishResponse();
+            if (pooled != null) {
+                return CompletableFuture.completedFuture(counted("pool", pooled));
+            }
+        }
+
+        // 完全なカテゴリパスはロード時に生成済みのため、配列から1つ選ぶだけでよい
+        String fullCategoryIdForRanking = current.categoryIndex().randomPath(ThreadLocalRandom.current());
+        if (fullCategoryIdForRanking == null) {
+            LOG.warn("dish.no_category", "msg", "完全なカテゴリパスを選択できませんでした。");
+            return CompletableFuture.completedFuture(counted("none", messageDishResponse(HttpStatus.INTERNAL_SERVER_ERROR, PATH_ERROR_JSON)));
+        }
+
+        recipePool.recordRequest(fullCategoryIdForRanking);
+        // キャッシュにあるランキングはAPIを呼ばずに返せるため、同時実行数の制限も上限の調整も受けない。
+        // APIを呼び出す場合だけ同時実行数を制限し、上限を超えた分は待ち行列で待たせるか断る。
+        // 期限を過ぎてから届いた結果も次回以降のためにプールに蓄えるが、応答の記録やログは実際に返した応答についてだけ行う
+        RecipeApiClient.Ranking cached = apiClient.getCachedCategoryRanking(fullCategoryIdForRanking);
+        CompletableFuture<RecipeApiClient.Ranking> ranking = cached != null
+                ? CompletableFuture.completedFuture(cached)
+                : admission.acquire().thenCompose(permit -> apiClient.refreshCategoryRankingAsync(fullCategoryIdForRanking)
+                        .whenComplete((result, e) -> releasePermit(permit, e)));
+        CompletableFuture<RecipePool.PoolEntry> fetched = ranking.thenApply(result -> poolRanking(fullCategoryIdForRanking, result));
+        return fetched
+                .handle(Fetched::new)
+                .completeOnTimeout(null, responseDeadlineMillis, TimeUnit.MILLISECONDS)
+                .thenApply(result -> result != null
+                        ? fetchedDishResponse(fullCategoryIdForRanking, result)
+                        : deadlineFallbackResponse(fullCategoryIdForRanking));
+    }
+
+    /**
+     * APIを呼び出した結果に応じて実行許可を返却します。
+     * サーキットブレーカーや利用制限により手元ですぐに失敗した場合は、APIの混み具合とは無関係なため上限の調整に反映しません。
+     */
+    private static void releasePermit(AdmissionLimiter.Permit permit, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof CircuitOpenException || cause instanceof RateLimitExceededException) {
+            permit.discard();
+        } else {
+            permit.release(error == null);
+        }
+    }
+
+    /**
+     * API経由での取得結果。期限内に届いた場合だけ、これをもとに応答を作ります。
+     *
+     * @param entry 取得したレシピを登録したプールのエントリ（レシピがなかった場合は null）
+     * @param error 取得に失敗した場合の例外
+     */
+    private record Fetched(RecipePool.PoolEntry entry, Throwable error) {
+    }
+
+    /**
+     * ランキングAPIから取得したレシピをプールに登録します。登録時にレスポンスボディも生成されます。
+     * キャッシュから返された結果は元の取得時刻で登録するため、プールの鮮度の判定を誤らせません。
+     *
+     * @return 登録したエントリ（より新しいデータが既にあればそのエントリ）、またはレシピがなかった場合は null
+     */
+    private RecipePool.PoolEntry poolRanking(String fullCategoryIdForRanking, RecipeApiClient.Ranking ranking) {
+        if (ranking.recipes().isEmpty()) {
+            return null;
+        }
+        recipePool.put(fullCategoryIdForRanking, ranking.recipes(), ranking.fetchedAtMillis());
+        return recipePool.get(fullCategoryIdForRanking);
+    }
+
+    /**
+     * 期限内に届いたAPI経由の取得結果からレスポンスを作ります。
+     * 取得に失敗した場合は、取得済みのレシピから選ぶか、エラーまたは過負荷のレスポンスを返します。
+     */
+    private ResponseEntity<byte[]> fetchedDishResponse(String fullCategoryIdForRanking, Fetched result) {
+        if (result.error() == null) {
+            return rankingDishResponse(fullCategoryIdForRanking, result.entry());
+        }
+        Throwable e = result.error();
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof AdmissionRejectedException) {
+            // 過負荷時はログを出さず、取得済みのレシピか Retry-After 付きの応答をすぐに返す
+            ResponseEntity<byte[]> pooled = pooledDishResponse();
+            return pooled != null ? counted("fallback", pooled) : counted("shed", overloadedResponse());
+        }
+        if (cause instanceof CircuitOpenException) {
+            LOG.warn("dish.circuit_open", "msg", "APIの呼び出しが停止中のため、取得済みのレシピから選びます。");
+        } else {
+            LOG.error("dish.api_failed", cause, "msg", "料理名の生成中にエラーが発生しました", "category", fullCategoryIdForRanking);
+        }
+        // APIが使えなくても、取得済みのレシピがあればエラーにせずそこから返す
+        ResponseEntity<byte[]> pooled = pooledDishResponse();
+        if (pooled != null) {
+            return counted("fallback", pooled);
+        }
+        return counted("none", messageDishResponse(HttpStatus.SERVICE_UNAVAILABLE, API_ERROR_JSON));
+    }
+
+    /**
+     * 材料の条件に合うレシピを、プールの材料インデックスから1件選んでレスポンスを作ります。APIは呼び出しません。
+     */
+    private ResponseEntity<byte[]> filteredDishResponse(List<String> include, List<String> exclude) {
+        RecipePool.PoolPick pick = recipePool.ingredientIndex().pickRandom(include, exclude, ThreadLocalRandom.current());
+        if (pick == null) {
+            return counted("none", messageDishResponse(HttpStatus.NOT_FOUND, NO_MATCH_JSON));
+        }
+        recipePool.recordRequest(pick.categoryPath());
+        return counted("pool", dishResponse(pick.payload()));
+    }
+
+    /**
+     * 空でない語を取り出します。上限を超えたかどうかが分かれば十分なため、DISH_FILTER_MAX_TERMS + 1 個で打ち切ります。
+     */
+    private static List<String> nonBlank(List<String> values) {
+        if (values == null) {
+            return List.of();
+        }
+        return values.stream().filter(v -> v != null && !v.isBlank()).limit(DISH_FILTER_MAX_TERMS + 1).map(String::trim).toList();
+    }
+
+    /**
+     * ランキングAPIから取得してプールに登録したレシピから1件を選んでレスポンスを作ります。
+     */
+    private ResponseEntity<byte[]> rankingDishResponse(String fullCategoryIdForRanking, RecipePool.PoolEntry entry) {
+        if (entry == null || entry.recipes().isEmpty()) {
+            LOG.warn("dish.empty_category", "msg", "カテゴリからレシピが取得できませんでした。", "category", fullCategoryIdForRanking);
+            return counted("none", messageDishResponse(HttpStatus.NOT_FOUND, "このカテゴリ（" + fullCategoryIdForRanking + "）には料理がありませんでした。もう一度！"));
+        }
+        RecipePool.PoolPick pick = RecipePool.pick(fullCategoryIdForRanking, entry, ThreadLocalRandom.current());
+        return counted("api", dishResponse(pick.payload()));
+    }
+
+    /**
+     * プールからランダムに1件を選んでレスポンスを作ります。
+     *
+     * @return レスポンス、またはプールが空の場合は null
+     */
+    private ResponseEntity<byte[]> pooledDishResponse() {
+        RecipePool.PoolPick pick = recipePool.pickRandom(ThreadLocalRandom.current());
+        if (pick == null) {
+            return null;
+        }
+        recipePool.recordRequest(pick.categoryPath());
+        return dishResponse(pick.payload());
+    }
+
+    /**
+     * APIの応答が期限内に届かなかった場合のレスポンス。プールがまだ温まっていなくても、取得済みのレシピがあればそこから選びます。
+     */
+    private ResponseEntity<byte[]> deadlineFallbackResponse(String fullCategoryIdForRanking) {
+        LOG.warn("dish.deadline_exceeded", "msg", "API応答が期限内に届かなかったため、取得済みのレシピから選びます。",
+                "category", fullCategoryIdForRanking, "deadlineMs", responseDeadlineMillis);
+        ResponseEntity<byte[]> pooled = pooledDishResponse();
+        if (pooled != null) {
+            return counted("fallback", pooled);
+        }
+        return counted("none", messageDishResponse(HttpStatus.GATEWAY_TIMEOUT, DEADLINE_JSON));
+    }
+
+    /**
+     * /api/generateDish のレスポンスをメトリクスに記録します。
+     *
+     * @param source 献立の出どころ（"pool"・"api"・"fallback"）、または献立を返さない場合は "none"
+     * @return 渡されたレスポンス
+     */
+    private ResponseEntity<byte[]> counted(String source, ResponseEntity<byte[]> response) {
+        metrics.recordResponse("generateDish", response.getStatusCode().value(), source);
+        if (LOG.sampled()) {
+            LOG.info("dish.response", "status", response.getStatusCode().value(), "source", source);
+        }
+        return response;
+    }
+
+    /**
+     * 献立の代わりにメッセージを返すレスポンスを作ります。メッセージ以外の項目は空文字列にします。
+     * 再検証されない応答のため、ETag は付けません。
+     */
+    private static ResponseEntity<byte[]> messageDishResponse(HttpStatus status, String message) {
+        return messageDishResponse(status, DishPayload.messageJson(message));
+    }
+
+    private static ResponseEntity<byte[]> messageDishResponse(HttpStatus status, byte[] json) {
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON).body(json);
+    }
+
+    /**
+     * 過負荷のため処理を受け付けなかったことを表す 503 レスポンスを作ります。再試行までの秒数を Retry-After ヘッダで返します。
+     */
+    private static ResponseEntity<byte[]> overloadedResponse() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(ADMISSION_RETRY_AFTER_SECONDS))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(OVERLOADED_JSON);
+    }
+
+    /**
+     * 事前に生成したボディをそのまま返すレスポンスを作ります。ボディの内容から求めた ETag を付けます。
+     */
+    private static ResponseEntity<byte[]> dishResponse(DishPayload payload) {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).eTag(payload.etag()).body(payload.json());
+    }
+
+    /**
+     * 互いに異なるカテゴリから count 件の献立をまとめて生成します（1週間分の献立など）。
+     * 献立は決まったものから順にストリームで返すため、プールから選べた分はAPIの応答を待たずに届きます。
+     * プールが空の場合は 404 を返します。
+     *
+     * @param count 生成する献立の数（1 以上 DISH_BATCH_MAX_COUNT 以下）
+     */
+    @PostMapping("/api/generateDishes")
+    @ResponseBody
+    public ResponseEntity<StreamingResponseBody> generateDishesApi(@RequestParam(defaultValue = "7") int count) {
+        State current = state;
+
+        if (current.status() != Status.READY) {
+            return messageResponse(HttpStatus.SERVICE_UNAVAILABLE, current.displayMessage());
+        }
+        if (count < 1 || count > DISH_BATCH_MAX_COUNT) {
+            return messageResponse(HttpStatus.BAD_REQUEST, "献立の数は1～" + DISH_BATCH_MAX_COUNT + "の範囲で指定してください。");
+        }
+        if (recipePool.categoryCount() == 0) {
+            // 取得済みのレシピがないうちは、すべてをAPIから取ろうとしても利用制限で数件しか揃わないため受け付けない
+            return messageResponse(HttpStatus.NOT_FOUND, "まだ献立を用意できていません。少し待ってからもう一度！");
+        }
+
+        // プールだけでは足りない場合はAPIを同期的に呼び出すため、空きがなければ待たせずに断る
+        AdmissionLimiter.Permit permit = null;
+        if (recipePool.categoryCount() < count) {
+            permit = admission.tryAcquire();
+            if (permit == null) {
+                metrics.recordResponse("generateDishes", HttpStatus.SERVICE_UNAVAILABLE.value(), "shed");
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, Long.toString(ADMISSION_RETRY_AFTER_SECONDS))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(out -> writeMessage(out, OVERLOADED_MESSAGE));
+            }
+        }
+
+        AdmissionLimiter.Permit batchPermit = permit;
+        StreamingResponseBody body = out -> {
+            try {
+                writeDishes(out, current.categoryIndex(), count);
+            } finally {
+                // 複数回のAPI呼び出しとクライアントへの書き込みを含む時間のため、1回の呼び出しの目標時間とは比べない
+                if (batchPermit != null) {
+                    batchPermit.discard();
                 }
-            } else {
-                response.put("dishName", "カテゴリパス生成エラー。もう一度！");
-                response.put("dishImageUrl", "");
-                response.put("recipeDescription", "");
-                response.put("recipeMaterial", "");
-                response.put("recipeUrl", "");
-                System.err.println("完全なカテゴリパスを生成できませんでした: " + selectedSmallCategoryId);
-                return new ResponseEntity<>(response, HttpStatus.INTERNAL_SERVER_ERROR);
             }
-        } catch (Exception e) {
-            System.err.println("料理名の生成中にエラーが発生しました (API): " + e.getMessage());
-            e.printStackTrace();
-            response.put("dishName", "料理生成中にエラーが発生しました。");
-            response.put("dishImageUrl", "");
-            response.put("recipeDescription", "");
-            response.put("recipeMaterial", "");
-            response.put("recipeUrl", "");
-            return new ResponseEntity<>(response, HttpStatus.INTERNAL_SERVER_ERROR);
+        };
+        metrics.recordResponse("generateDishes", HttpStatus.OK.value(), "batch");
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * {"dishName": message, "dishes": []} の形式のレスポンスを返します（エラー時用）。
+     */
+    private ResponseEntity<StreamingResponseBody> messageResponse(HttpStatus status, String message) {
+        metrics.recordResponse("generateDishes", status.value(), "none");
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON).body(out -> writeMessage(out, message));
+    }
+
+    private static void writeMessage(OutputStream out, String message) throws IOException {
+        try (JsonGenerator json = JSON_FACTORY.createGenerator(out)) {
+            json.writeStartObject();
+            json.writeStringField("dishName", message);
+            json.writeArrayFieldStart("dishes");
+            json.writeEndArray();
+            json.writeEndObject();
+        }
+    }
+
+    /**
+     * {"dishes": [...]} の形式で献立を書き出します。1件書くごとにフラッシュします。
+     */
+    private void writeDishes(OutputStream out, CategoryIndex categoryIndex, int count) throws IOException {
+        RandomGenerator random = ThreadLocalRandom.current();
+        Set<String> usedCategories = new HashSet<>(count * 2);
+
+        // 献立ごとのボディは生成済みのため、配列の区切りだけを書き足す
+        out.write(DISHES_START);
+        boolean first = true;
+
+        // まずプールから重複なしで選ぶ（APIは呼ばない）
+        for (RecipePool.PoolPick pick : recipePool.sampleDistinct(count, random)) {
+            recipePool.recordRequest(pick.categoryPath());
+            usedCategories.add(pick.categoryPath());
+            writeDish(out, pick.payload(), first);
+            first = false;
+        }
+
+        // 足りない分は、まだ使っていないカテゴリのランキングをAPIから取得して補う
+        int remaining = count - usedCategories.size();
+        if (remaining > 0) {
+            // 使用済みのカテゴリと重なっても remaining 件を確保できるだけの候補を選んでおく
+            int[] candidates = RandomSampling.distinctIndices(categoryIndex.size(), count, random);
+            for (int i = 0; i < candidates.length && remaining > 0; i++) {
+                String categoryPath = categoryIndex.pathAt(candidates[i]);
+                if (!usedCategories.add(categoryPath)) {
+                    continue;
+                }
+                RecipeApiClient.Ranking ranking;
+                try {
+                    recipePool.recordRequest(categoryPath);
+                    ranking = apiClient.getDishAndImageAndDetailsFromCategoryRanking(categoryPath);
+                } catch (RateLimitExceededException e) {
+                    // APIの利用枠が空くのを待ち続けず、揃った分だけで返す
+                    LOG.warn("dishes.rate_limited", "msg", "APIの呼び出し上限に達したため、献立を補えませんでした。", "missing", remaining);
+                    break;
+                } catch (Exception e) {
+                    LOG.warn("dishes.api_failed", "msg", "レシピ取得に失敗しました", "category", categoryPath, "error", e);
+                    continue;
+                }
+                if (ranking.recipes().isEmpty()) {
+                    continue;
+                }
+                recipePool.put(categoryPath, ranking.recipes(), ranking.fetchedAtMillis());
+                writeDish(out, RecipePool.pick(categoryPath, recipePool.get(categoryPath), random).payload(), first);
+                first = false;
+                remaining--;
+            }
+        }
+
+        out.write(DISHES_END);
+        out.flush();
+    }
+
+    private static void writeDish(OutputStream out, DishPayload payload, boolean first) throws IOException {
+        if (!first) {
+            out.write(',');
         }
+        out.write(payload.json());
+        out.flush();
     }
-}
\ No newline at end of file
+}
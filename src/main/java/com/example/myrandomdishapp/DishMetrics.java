@@ -0,0 +1,180 @@
+package com.example.myrandomdishapp;
+
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * 献立生成まわりのメトリクス（Micrometer）をまとめて記録します。
+ * メーター名とタグをここに集約し、呼び出し側は計測値を渡すだけで済むようにしています。
+ *
+ * <p>リクエストごとに記録するメーターは、タグの組み合わせごとに一度だけ登録して保持しておき、
+ * 記録のたびにビルダーやタグを作ってレジストリを検索しないようにしています。
+ */
+public class DishMetrics {
+
+    // 外部APIの種類（タグ "api" の値）
+    public static final String API_RANKING = "ranking";
+    public static final String API_CATEGORY_LIST = "category_list";
+
+    /**
+     * メーターを引くためのタグの組み合わせ。
+     */
+    private record Tags2(String first, String second) {
+    }
+
+    /**
+     * dish.responses のタグの組み合わせ。
+     */
+    private record ResponseTags(String endpoint, int status, String source) {
+    }
+
+    private final MeterRegistry registry;
+    private final Timer rateLimitWait;
+    // タグの組み合わせ → 登録済みのメーター
+    private final ConcurrentHashMap<Tags2, Timer> upstreamCalls = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Tags2, Counter> upstreamRejections = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Timer> decodes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<ResponseTags, Counter> responses = new ConcurrentHashMap<>();
+
+    public DishMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.rateLimitWait = Timer.builder("rakuten.api.ratelimit.wait")
+                .description("API呼び出しの利用制限による待機時間")
+                .register(registry);
+    }
+
+    /**
+     * レジストリを持たない呼び出し元（テストやツールなど）向けの、グローバルレジストリに記録するインスタンスを返します。
+     * グローバルレジストリにレジストリが追加されていなければ、記録した値はどこにも出力されません。
+     */
+    public static DishMetrics global() {
+        return new DishMetrics(Metrics.globalRegistry);
+    }
+
+    /**
+     * 外部API呼び出し1回分の所要時間（リクエスト送信から応答ヘッダの受信まで）を記録します。
+     *
+     * @param api API_RANKING または API_CATEGORY_LIST
+     * @param error 失敗した場合の例外（成功時は null）
+     * @param nanos 所要時間（ナノ秒）
+     */
+    public void recordUpstreamCall(String api, Throwable error, long nanos) {
+        upstreamCalls.computeIfAbsent(new Tags2(api, outcomeOf(error)), tags -> Timer.builder("rakuten.api.requests")
+                .description("楽天レシピAPIの呼び出し時間")
+                .tag("api", tags.first())
+                .tag("outcome", tags.second())
+                .publishPercentileHistogram()
+                .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * APIを呼び出さずに諦めた回数を記録します。
+     *
+     * @param api API_RANKING または API_CATEGORY_LIST
+     * @param reason "rate_limited" や "circuit_open" などの理由
+     */
+    public void recordUpstreamRejected(String api, String reason) {
+        upstreamRejections.computeIfAbsent(new Tags2(api, reason), tags -> Counter.builder("rakuten.api.rejected")
+                .description("利用制限やサーキットブレーカーにより見送ったAPI呼び出しの回数")
+                .tag("api", tags.first())
+                .tag("reason", tags.second())
+                .register(registry))
+                .increment();
+    }
+
+    /**
+     * @param waitNanos 利用制限の枠が空くまで待った時間（ナノ秒）
+     */
+    public void recordRateLimitWait(long waitNanos) {
+        rateLimitWait.record(waitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * レスポンスボディのJSON解析にかかった時間を記録します。
+     *
+     * @param api API_RANKING または API_CATEGORY_LIST
+     * @param nanos 所要時間（ナノ秒）
+     */
+    public void recordDecode(String api, long nanos) {
+        decodes.computeIfAbsent(api, tag -> Timer.builder("rakuten.api.decode")
+                .description("APIレスポンスのJSON解析時間")
+                .tag("api", tag)
+                .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * カテゴリ一覧のロード1回分の所要時間を記録します。
+     *
+     * @param success 新しいカテゴリ索引を反映できた場合は true
+     * @param nanos 所要時間（ナノ秒）
+     */
+    public void recordCategoryLoad(boolean success, long nanos) {
+        Timer.builder("dish.categories.load")
+                .description("カテゴリ一覧のロード時間")
+                .tag("outcome", success ? "success" : "failure")
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 献立APIのレスポンスを記録します。
+     *
+     * @param endpoint "generateDish" などのエンドポイント名
+     * @param status HTTPステータスコード
+     * @param source 献立の出どころ（"pool"・"api"・"fallback"）、または献立を返さなかった場合は "none"
+     */
+    public void recordResponse(String endpoint, int status, String source) {
+        responses.computeIfAbsent(new ResponseTags(endpoint, status, source), tags -> Counter.builder("dish.responses")
+                .description("献立APIのレスポンス数")
+                .tag("endpoint", tags.endpoint())
+                .tag("status", Integer.toString(tags.status()))
+                .tag("source", tags.source())
+                .register(registry))
+                .increment();
+    }
+
+    /**
+     * 件数などの現在値をゲージとして登録します。値は参照されるたびに supplier から取得します。
+     */
+    public void registerGauge(String name, String description, Supplier<Number> supplier) {
+        Gauge.builder(name, supplier).description(description).register(registry);
+    }
+
+    /**
+     * ランキング結果キャッシュのサイズとヒット・ミス・破棄の回数を登録します。
+     */
+    public void registerCache(String name, TtlLruCache<?, ?> cache) {
+        Gauge.builder("dish.cache.size", cache, TtlLruCache::size)
+                .tag("cache", name).register(registry);
+        FunctionCounter.builder("dish.cache.requests", cache, TtlLruCache::getHitCount)
+                .tag("cache", name).tag("result", "hit").register(registry);
+        FunctionCounter.builder("dish.cache.requests", cache, TtlLruCache::getMissCount)
+                .tag("cache", name).tag("result", "miss").register(registry);
+        FunctionCounter.builder("dish.cache.evictions", cache, TtlLruCache::getEvictionCount)
+                .tag("cache", name).register(registry);
+    }
+
+    private static String outcomeOf(Throwable error) {
+        if (error == null) {
+            return "success";
+        }
+        if (error instanceof UpstreamHttpException http) {
+            return http.getStatusCode() >= 500 ? "server_error" : "client_error";
+        }
+        if (error instanceof HttpTimeoutException) {
+            return "timeout";
+        }
+        return "io_error";
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.myrandomdishapp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * 献立APIのレスポンスボディ（UTF-8 の JSON）を事前に生成したもの。
+ * レシピがプールに登録されたときに一度だけ生成し、リクエストごとの Map の作成やシリアライズを省きます。
+ *
+ * @param json レスポンスボディ（変更しないこと）
+ * @param etag ボディの内容から求めた強いETag（引用符付き）
+ */
+public record DishPayload(byte[] json, String etag) {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * レシピからレスポンスボディを生成します。画像URLは画像プロキシのURLに置き換えます（{@link ImageCache#localUrl}）。
+     */
+    public static DishPayload of(Recipe recipe) {
+        return render(recipe.title(), ImageCache.localUrl(recipe), recipe.description(), recipe.materialText(), recipe.recipeUrl());
+    }
+
+    /**
+     * レシピの一覧からレスポンスボディを生成します。
+     *
+     * @return recipes と同じ順序のボディ（変更不可）
+     */
+    public static List<DishPayload> ofAll(List<Recipe> recipes) {
+        List<DishPayload> payloads = new ArrayList<>(recipes.size());
+        for (Recipe recipe : recipes) {
+            payloads.add(of(recipe));
+        }
+        return List.copyOf(payloads);
+    }
+
+    /**
+     * 献立の代わりにメッセージを返すレスポンスボディを生成します。メッセージ以外の項目は空文字列になります。
+     */
+    public static DishPayload message(String message) {
+        return render(message, "", "", "", "");
+    }
+
+    /**
+     * 献立の代わりにメッセージを返すレスポンスボディだけを生成します。
+     * エラーなどの応答はクライアントが再検証しないため、{@link #message} と異なり ETag は求めません。
+     */
+    public static byte[] messageJson(String message) {
+        return renderJson(message, "", "", "", "");
+    }
+
+    private static DishPayload render(String dishName, String dishImageUrl, String recipeDescription,
+                                      String recipeMaterial, String recipeUrl) {
+        byte[] bytes = renderJson(dishName, dishImageUrl, recipeDescription, recipeMaterial, recipeUrl);
+        return new DishPayload(bytes, etagOf(bytes));
+    }
+
+    private static byte[] renderJson(String dishName, String dishImageUrl, String recipeDescription,
+                                     String recipeMaterial, String recipeUrl) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+        try (JsonGenerator json = JSON_FACTORY.createGenerator(out)) {
+            json.writeStartObject();
+            json.writeStringField("dishName", dishName);
+            json.writeStringField("dishImageUrl", dishImageUrl);
+            json.writeStringField("recipeDescription", recipeDescription);
+            json.writeStringField("recipeMaterial", recipeMaterial);
+            json.writeStringField("recipeUrl", recipeUrl);
+            json.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static String etagOf(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 22) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // ボディは ETag で一意に決まるため、比較には ETag だけを使う
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof DishPayload other && etag.equals(other.etag);
+    }
+
+    @Override
+    public int hashCode() {
+        return etag.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "DishPayload[" + json.length + " bytes, etag=" + etag + "]";
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.myrandomdishapp;
+
+/**
+ * 環境変数（またはJVMシステムプロパティ）から設定値を読み込むためのユーティリティ。
+ * システムプロパティが設定されていればそちらを優先し、どちらも無い場合はデフォルト値を返します。
+ */
+final class EnvConfig {
+
+    private EnvConfig() {
+    }
+
+    /**
+     * 文字列の設定値を取得します。
+     *
+     * @param key 環境変数名（システムプロパティ名としても使用）
+     * @param defaultValue 未設定時の値
+     * @return 設定値、または defaultValue
+     */
+    static String getString(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null || value.isEmpty()) {
+            value = System.getenv(key);
+        }
+        return (value == null || value.isEmpty()) ? defaultValue : value;
+    }
+
+    /**
+     * 数値の設定値を取得します。数値として解釈できない場合はデフォルト値を返します。
+     *
+     * @param key 環境変数名（システムプロパティ名としても使用）
+     * @param defaultValue 未設定時または不正な値の場合の値
+     * @return 設定値、または defaultValue
+     */
+    static long getLong(String key, long defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("設定値 '" + key + "' が数値ではありません: " + value + "（デフォルト値 " + defaultValue + " を使用します）");
+            return defaultValue;
+        }
+    }
+
+    /**
+     * 小数の設定値を取得します。数値として解釈できない場合はデフォルト値を返します。
+     *
+     * @param key 環境変数名（システムプロパティ名としても使用）
+     * @param defaultValue 未設定時または不正な値の場合の値
+     * @return 設定値、または defaultValue
+     */
+    static double getDouble(String key, double defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("設定値 '" + key + "' が数値ではありません: " + value + "（デフォルト値 " + defaultValue + " を使用します）");
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.myrandomdishapp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * 1行1件の JSON 形式でイベントを出力する非同期ログ。
+ *
+ * <p>呼び出し側はイベントをロックなしのリングバッファに入れるだけで、整形と出力はバックグラウンドの
+ * 書き込みスレッドが行います。バッファが一杯の場合は待たずにイベントを捨て、捨てた件数を後から出力します。
+ * そのため、ログの出力がリクエスト処理を止めることはありません。
+ *
+ * <p>出力する値に含まれる楽天APIのアプリケーションIDは伏せ字にします。
+ * WARN・ERROR はイベント名ごとに1秒あたりの件数を制限し、抑止した件数を次に出力する行に含めます。
+ */
+public final class EventLog {
+
+    public enum Level {
+        INFO, WARN, ERROR
+    }
+
+    // リングバッファの容量（2のべき乗に切り上げる）
+    private static final int BUFFER_SIZE = (int) EnvConfig.getLong("LOG_BUFFER_SIZE", 8192);
+    // リクエストごとのイベントを出力する割合（0.0～1.0）
+    private static final double SAMPLE_RATE = EnvConfig.getDouble("LOG_SAMPLE_RATE", 0.01);
+    // WARN・ERROR をイベント名ごとに1秒あたり何件まで出力するか
+    private static final long ERRORS_PER_SECOND = EnvConfig.getLong("LOG_ERRORS_PER_SECOND", 5);
+    // スタックトレースとして出力するフレーム数の上限
+    private static final int MAX_STACK_FRAMES = 20;
+
+    private static final Pattern APP_ID_PARAM = Pattern.compile("(applicationId=)[^&\\s\"]+");
+    private static final String REDACTED = "***";
+
+    private static final EventLog INSTANCE = new EventLog(BUFFER_SIZE, SAMPLE_RATE, ERRORS_PER_SECOND,
+            EnvConfig.getString("RAKUTEN_APP_ID", null), System.out, System.err);
+
+    /**
+     * リングバッファに入れる1件分のイベント。整形は書き込みスレッドで行うため、値は不変のものを渡してください。
+     */
+    private record Event(long timeMillis, Level level, String name, String thread, Object[] fields,
+                         Throwable error, long suppressed) {
+    }
+
+    private final int mask;
+    private final AtomicReferenceArray<Event> buffer;
+    // 次に書き込む位置（生産者が CAS で確保する）と、次に読み出す位置（書き込みスレッドだけが進める）
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    private final double sampleRate;
+    private final long errorsPerSecond;
+    private final String appId;
+    private final PrintStream out;
+    private final PrintStream err;
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final ConcurrentHashMap<String, ErrorBudget> errorBudgets = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+
+    /**
+     * イベント名ごとの WARN・ERROR の出力枠と、枠を超えて抑止した件数。
+     */
+    private record ErrorBudget(TokenBucketRateLimiter limiter, LongAdder suppressed) {
+    }
+
+    EventLog(int bufferSize, double sampleRate, long errorsPerSecond, String appId, PrintStream out, PrintStream err) {
+        int capacity = Integer.highestOneBit(Math.max(bufferSize, 2) - 1) << 1;
+        this.mask = capacity - 1;
+        this.buffer = new AtomicReferenceArray<>(capacity);
+        this.sampleRate = sampleRate;
+        this.errorsPerSecond = Math.max(errorsPerSecond, 1);
+        // 短すぎる値をそのまま置き換えると無関係な文字列まで伏せてしまうため、実際のIDと同程度の長さがある場合だけ使う
+        this.appId = appId == null || appId.length() < 8 ? null : appId;
+        this.out = out;
+        this.err = err;
+        this.writer = new Thread(this::runWriter, "event-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::drain, "event-log-flush"));
+    }
+
+    /**
+     * @return アプリ全体で共有するインスタンス
+     */
+    public static EventLog get() {
+        return INSTANCE;
+    }
+
+    /**
+     * リクエストごとのイベントを出力するかどうかを LOG_SAMPLE_RATE の割合で判定します。
+     * 値の組み立てを省くため、{@link #info} の呼び出しをこの判定で囲んで使用します。
+     */
+    public boolean sampled() {
+        return sampleRate >= 1.0 || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    /**
+     * @param name イベント名（例: "dish.generated"）
+     * @param fields 項目名と値を交互に並べたもの
+     */
+    public void info(String name, Object... fields) {
+        publish(Level.INFO, name, fields, null, 0);
+    }
+
+    /**
+     * イベント名ごとの件数制限を超えた場合は出力しません。
+     */
+    public void warn(String name, Object... fields) {
+        limited(Level.WARN, name, fields, null);
+    }
+
+    /**
+     * スタックトレースを含めて出力します。イベント名ごとの件数制限を超えた場合は出力しません。
+     *
+     * @param error 原因となった例外
+     */
+    public void error(String name, Throwable error, Object... fields) {
+        limited(Level.ERROR, name, fields, error);
+    }
+
+    /**
+     * @return バッファが一杯だったために捨てたイベントの累計
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    private void limited(Level level, String name, Object[] fields, Throwable error) {
+        ErrorBudget budget = errorBudgets.computeIfAbsent(name, k -> new ErrorBudget(
+                new TokenBucketRateLimiter(TimeUnit.SECONDS.toNanos(1) / errorsPerSecond, TimeUnit.NANOSECONDS, (int) errorsPerSecond),
+                new LongAdder()));
+        if (budget.limiter().tryReserve(0, TimeUnit.NANOSECONDS) < 0) {
+            budget.suppressed().increment();
+            return;
+        }
+        publish(level, name, fields, error, budget.suppressed().sumThenReset());
+    }
+
+    private void publish(Level level, String name, Object[] fields, Throwable error, long suppressed) {
+        Event event = new Event(System.currentTimeMillis(), level, name, Thread.currentThread().getName(), fields, error, suppressed);
+        while (true) {
+            long t = tail.get();
+            if (t - head > mask) {
+                dropped.increment();
+                return;
+            }
+            if (tail.compareAndSet(t, t + 1)) {
+                buffer.lazySet((int) t & mask, event);
+                return;
+            }
+        }
+    }
+
+    private void runWriter() {
+        long reportedDrops = 0;
+        while (true) {
+            int written = drain();
+            long drops = dropped.sum();
+            if (drops != reportedDrops) {
+                write(new Event(System.currentTimeMillis(), Level.WARN, "log.dropped", writer.getName(),
+                        new Object[] { "count", drops - reportedDrops }, null, 0));
+                reportedDrops = drops;
+                err.flush();
+            }
+            if (written == 0) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+            }
+        }
+    }
+
+    // 書き込みスレッドと終了時のフックの両方から呼ばれるため、読み出し位置の更新は同期する
+    private synchronized int drain() {
+        int written = 0;
+        while (true) {
+            int index = (int) head & mask;
+            Event event = buffer.get(index);
+            if (event == null) {
+                break; // 空、または確保済みでまだ書き込まれていない
+            }
+            buffer.lazySet(index, null);
+            head = head + 1;
+            write(event);
+            written++;
+        }
+        if (written > 0) {
+            out.flush();
+            err.flush();
+        }
+        return written;
+    }
+
+    private void write(Event event) {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        try (JsonGenerator json = jsonFactory.createGenerator(line)) {
+            json.writeStartObject();
+            json.writeStringField("ts", Instant.ofEpochMilli(event.timeMillis()).toString());
+            json.writeStringField("level", event.level().name());
+            json.writeStringField("event", event.name());
+            json.writeStringField("thread", event.thread());
+            Object[] fields = event.fields();
+            for (int i = 0; i + 1 < fields.length; i += 2) {
+                writeField(json, String.valueOf(fields[i]), fields[i + 1]);
+            }
+            if (event.suppressed() > 0) {
+                json.writeNumberField("suppressed", event.suppressed());
+            }
+            if (event.error() != null) {
+                writeField(json, "error", event.error());
+                json.writeArrayFieldStart("stack");
+                StackTraceElement[] frames = event.error().getStackTrace();
+                for (int i = 0; i < Math.min(frames.length, MAX_STACK_FRAMES); i++) {
+                    json.writeString(frames[i].toString());
+                }
+                json.writeEndArray();
+            }
+            json.writeEndObject();
+        } catch (IOException e) {
+            return;
+        }
+        PrintStream stream = event.level() == Level.INFO ? out : err;
+        stream.println(line.toString(StandardCharsets.UTF_8));
+    }
+
+    private void writeField(JsonGenerator json, String key, Object value) throws IOException {
+        if (value instanceof Long || value instanceof Integer) {
+            json.writeNumberField(key, ((Number) value).longValue());
+        } else if (value instanceof Number n) {
+            json.writeNumberField(key, n.doubleValue());
+        } else if (value instanceof Boolean b) {
+            json.writeBooleanField(key, b);
+        } else if (value instanceof Throwable t) {
+            json.writeStringField(key, redact(t.getClass().getSimpleName() + ": " + t.getMessage()));
+        } else {
+            json.writeStringField(key, redact(String.valueOf(value)));
+        }
+    }
+
+    /**
+     * URLのクエリパラメータやエラーメッセージに含まれるアプリケーションIDを伏せ字にします。
+     */
+    String redact(String value) {
+        if (value.indexOf("applicationId=") >= 0) {
+            value = APP_ID_PARAM.matcher(value).replaceAll("$1" + REDACTED);
+        }
+        if (appId != null && value.contains(appId)) {
+            value = value.replace(appId, REDACTED);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.myrandomdishapp;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * キーごとの出現回数を固定サイズの表で近似的に数える Count-Min Sketch。
+ * キーの数に関係なくメモリ使用量は一定で、推定値は実際の回数以上になります（ハッシュの衝突分だけ多めに数える）。
+ *
+ * <p>{@link #decay()} ですべての値を半分にすることで、古いアクセスの影響を時間とともに小さくします。
+ * 呼び出し間隔が半減期になります。
+ */
+public final class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    // 行ごとに異なるハッシュを作るための係数（奇数）
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L };
+
+    private final int width;
+    private final int mask;
+    private final AtomicIntegerArray table;
+
+    /**
+     * @param width 1行あたりのカウンタ数（2のべき乗に切り上げる）。数えるキーの種類数より大きくすると誤差が小さくなる
+     */
+    public FrequencySketch(int width) {
+        if (width <= 0) {
+            throw new IllegalArgumentException("width は1以上を指定してください: " + width);
+        }
+        this.width = width == 1 ? 1 : Integer.highestOneBit(width - 1) << 1;
+        this.mask = this.width - 1;
+        this.table = new AtomicIntegerArray(DEPTH * this.width);
+    }
+
+    /**
+     * キーの出現回数を1増やします。
+     */
+    public void increment(Object key) {
+        int hash = key.hashCode();
+        for (int row = 0; row < DEPTH; row++) {
+            int i = row * width + indexOf(hash, row);
+            // 上限に達したカウンタはそれ以上増やさない（decay までの間に溢れないようにする）
+            if (table.get(i) < Integer.MAX_VALUE) {
+                table.incrementAndGet(i);
+            }
+        }
+    }
+
+    /**
+     * @return キーの出現回数の推定値（各行のカウンタの最小値）
+     */
+    public int estimate(Object key) {
+        int hash = key.hashCode();
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, table.get(row * width + indexOf(hash, row)));
+        }
+        return min;
+    }
+
+    /**
+     * すべてのカウンタを半分にします。
+     */
+    public void decay() {
+        for (int i = 0; i < table.length(); i++) {
+            if (table.get(i) != 0) {
+                table.updateAndGet(i, v -> v >>> 1);
+            }
+        }
+    }
+
+    private int indexOf(int hash, int row) {
+        long x = (hash + SEEDS[row]) * SEEDS[row];
+        x ^= x >>> 32;
+        return (int) x & mask;
+    }
+}
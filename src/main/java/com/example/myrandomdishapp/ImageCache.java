@@ -0,0 +1,344 @@
+package com.example.myrandomdishapp;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * レシピ画像を一度だけ取得し、縮小したJPEGをディスクに保存するキャッシュ。
+ * 保存したファイルの合計サイズが上限を超えた場合は、最も長く参照されていないものから削除します（LRU）。
+ * 追い出したファイルは、送信中のリクエストが読み終えられるよう、しばらく待ってから削除します。
+ *
+ * <p>取得と縮小はリクエスト処理スレッドとは別のスレッドで行い、同じ画像への同時の要求は1回の取得にまとめます。
+ */
+public class ImageCache {
+
+    // 画像プロキシを使うかどうか。false の場合、献立のレスポンスには楽天の画像URLをそのまま返す
+    public static final boolean ENABLED = Boolean.parseBoolean(EnvConfig.getString("IMAGE_PROXY_ENABLED", "true"));
+
+    // 保存先のディレクトリと、保存するファイルの合計サイズの上限（MB）
+    private static final String CACHE_DIR = EnvConfig.getString("IMAGE_CACHE_DIR", "data/images");
+    private static final long CACHE_MAX_MB = EnvConfig.getLong("IMAGE_CACHE_MAX_MB", 256);
+    // 縮小後の幅の上限（ピクセル）とJPEGの品質
+    private static final long THUMBNAIL_WIDTH = EnvConfig.getLong("IMAGE_THUMBNAIL_WIDTH", 480);
+    private static final double JPEG_QUALITY = EnvConfig.getDouble("IMAGE_JPEG_QUALITY", 0.8);
+    // 取得する画像のサイズの上限（バイト）。これを超える画像は縮小せずに元のURLを使わせる
+    private static final long MAX_SOURCE_BYTES = EnvConfig.getLong("IMAGE_MAX_SOURCE_BYTES", 10 * 1024 * 1024);
+    // 縮小処理を行うスレッド数
+    private static final long WORKER_THREADS = EnvConfig.getLong("IMAGE_WORKER_THREADS", 2);
+    // 取得に失敗した画像を再取得しない時間（秒）
+    private static final long FAILURE_TTL_SECONDS = EnvConfig.getLong("IMAGE_FAILURE_TTL_SECONDS", 600);
+    // 上限を超えて追い出したファイルを実際に削除するまでの時間（秒）。送信中や sendfile で送信待ちのファイルを消さないようにする
+    private static final long EVICT_DELETE_DELAY_SECONDS = EnvConfig.getLong("IMAGE_EVICT_DELETE_DELAY_SECONDS", 60);
+
+    private static final EventLog LOG = EventLog.get();
+    private static final String SUFFIX = ".jpg";
+
+    private final Path dir;
+    private final long maxBytes;
+    private final int thumbnailWidth;
+    private final RecipeHttpTransport transport;
+    private final ExecutorService workers;
+    private final long evictDeleteDelayMillis;
+
+    // 保存済みのファイル（レシピID → バイト数）。アクセス順に並べ、先頭が最も長く参照されていないもの
+    private final LinkedHashMap<Long, Long> files = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+
+    private final ConcurrentHashMap<Long, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+    private final TtlLruCache<Long, Boolean> failures = new TtlLruCache<>(1024, FAILURE_TTL_SECONDS, TimeUnit.SECONDS);
+
+    public ImageCache() {
+        this(Paths.get(CACHE_DIR), CACHE_MAX_MB * 1024 * 1024, (int) THUMBNAIL_WIDTH, new RecipeHttpTransport());
+    }
+
+    /**
+     * @param dir 保存先のディレクトリ（なければ作成します）
+     * @param maxBytes 保存するファイルの合計サイズの上限
+     * @param thumbnailWidth 縮小後の幅の上限
+     * @param transport 画像の取得に使用するトランスポート
+     */
+    public ImageCache(Path dir, long maxBytes, int thumbnailWidth, RecipeHttpTransport transport) {
+        this(dir, maxBytes, thumbnailWidth, transport, EVICT_DELETE_DELAY_SECONDS * 1000);
+    }
+
+    /**
+     * @param evictDeleteDelayMillis 追い出したファイルを削除するまでの時間（ミリ秒）
+     */
+    ImageCache(Path dir, long maxBytes, int thumbnailWidth, RecipeHttpTransport transport, long evictDeleteDelayMillis) {
+        this.dir = dir;
+        this.evictDeleteDelayMillis = evictDeleteDelayMillis;
+        this.maxBytes = maxBytes;
+        this.thumbnailWidth = thumbnailWidth;
+        this.transport = transport;
+        this.workers = Executors.newFixedThreadPool((int) Math.max(WORKER_THREADS, 1), r -> {
+            Thread t = new Thread(r, "image-cache-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        loadExistingFiles();
+    }
+
+    /**
+     * 献立のレスポンスで返す画像URLを決めます。
+     *
+     * @return 画像プロキシのURL（/img/{recipeId}）、またはプロキシを使えない場合は元の画像URL
+     */
+    public static String localUrl(Recipe recipe) {
+        if (!ENABLED || recipe.recipeId() <= 0 || recipe.foodImageUrl().isEmpty()) {
+            return recipe.foodImageUrl();
+        }
+        return "/img/" + recipe.recipeId();
+    }
+
+    /**
+     * @param recipeId レシピID
+     * @return 保存済みの縮小画像、または未取得の場合は null
+     */
+    public Path cached(long recipeId) {
+        synchronized (this) {
+            if (files.get(recipeId) == null) {
+                return null;
+            }
+        }
+        return pathOf(recipeId);
+    }
+
+    /**
+     * 保存済みとして登録されているファイルが読めなかった場合に、登録を取り消します。次回の {@link #fetch} で取り直します。
+     *
+     * @param recipeId レシピID
+     */
+    public synchronized void invalidate(long recipeId) {
+        Long bytes = files.remove(recipeId);
+        if (bytes != null) {
+            totalBytes -= bytes;
+        }
+    }
+
+    /**
+     * 画像を取得して縮小・保存します。同じレシピIDの取得が進行中であれば、その結果を共有します。
+     *
+     * @param recipeId レシピID
+     * @param sourceUrl 元の画像URL
+     * @return 保存した縮小画像。取得や縮小に失敗した場合は例外で完了します
+     */
+    public CompletableFuture<Path> fetch(long recipeId, String sourceUrl) {
+        Path existing = cached(recipeId);
+        if (existing != null) {
+            return CompletableFuture.completedFuture(existing);
+        }
+        if (failures.get(recipeId) != null) {
+            return CompletableFuture.failedFuture(new IOException("最近取得に失敗した画像です: " + recipeId));
+        }
+        CompletableFuture<Path> created = new CompletableFuture<>();
+        CompletableFuture<Path> running = inFlight.putIfAbsent(recipeId, created);
+        if (running != null) {
+            return running;
+        }
+        URI uri;
+        try {
+            uri = URI.create(sourceUrl);
+        } catch (IllegalArgumentException e) {
+            inFlight.remove(recipeId, created);
+            created.completeExceptionally(e);
+            return created;
+        }
+        transport.getAsync(uri, "image/*")
+                .thenApplyAsync(body -> store(recipeId, body), workers)
+                .whenComplete((path, error) -> {
+                    inFlight.remove(recipeId, created);
+                    if (error != null) {
+                        failures.put(recipeId, Boolean.TRUE);
+                        LOG.warn("image.fetch_failed", "msg", "画像の取得に失敗しました", "recipeId", recipeId, "error", error);
+                        created.completeExceptionally(error);
+                    } else {
+                        created.complete(path);
+                    }
+                });
+        return created;
+    }
+
+    /**
+     * 取得・縮小用のスレッドを停止します。取得中の画像は保存せず、削除待ちのファイルは次回の起動時に上限に従って整理されます。
+     */
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * @return 保存済みのファイル数
+     */
+    public synchronized int size() {
+        return files.size();
+    }
+
+    /**
+     * @return 保存済みのファイルの合計サイズ（バイト）
+     */
+    public synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    private Path store(long recipeId, InputStream body) {
+        try {
+            byte[] source;
+            try (InputStream in = body) {
+                source = in.readNBytes((int) MAX_SOURCE_BYTES + 1);
+            }
+            if (source.length > MAX_SOURCE_BYTES) {
+                throw new IOException("画像が大きすぎます: " + recipeId);
+            }
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(source));
+            if (image == null) {
+                throw new IOException("画像の形式を読み取れません: " + recipeId);
+            }
+            Path path = pathOf(recipeId);
+            Path tmp = Files.createTempFile(dir, Long.toString(recipeId), ".tmp");
+            try {
+                try (OutputStream out = Files.newOutputStream(tmp)) {
+                    writeJpeg(resize(image, thumbnailWidth), out);
+                }
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            add(recipeId, Files.size(path));
+            return path;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 幅が maxWidth を超える場合は縦横比を保って縮小します。透過部分は白で塗りつぶします（JPEGは透過を持てないため）。
+     */
+    static BufferedImage resize(BufferedImage image, int maxWidth) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (width > maxWidth) {
+            height = Math.max(1, (int) Math.round((double) height * maxWidth / width));
+            width = maxWidth;
+        }
+        BufferedImage resized = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = resized.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return resized;
+    }
+
+    private static void writeJpeg(BufferedImage image, OutputStream out) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality((float) JPEG_QUALITY);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private void add(long recipeId, long bytes) {
+        List<Long> evicted = new ArrayList<>();
+        synchronized (this) {
+            Long previous = files.put(recipeId, bytes);
+            totalBytes += bytes - (previous == null ? 0 : previous);
+            Iterator<Map.Entry<Long, Long>> it = files.entrySet().iterator();
+            while (totalBytes > maxBytes && it.hasNext()) {
+                Map.Entry<Long, Long> eldest = it.next();
+                if (eldest.getKey() == recipeId) {
+                    continue; // 追加したばかりのファイルは残す
+                }
+                totalBytes -= eldest.getValue();
+                evicted.add(eldest.getKey());
+                it.remove();
+            }
+        }
+        if (!evicted.isEmpty()) {
+            // 追い出す直前に参照を返したリクエストが送信を終えるまで待ってから、ロックの外で削除する
+            CompletableFuture.delayedExecutor(evictDeleteDelayMillis, TimeUnit.MILLISECONDS, workers)
+                    .execute(() -> deleteEvicted(evicted));
+        }
+    }
+
+    private void deleteEvicted(List<Long> evicted) {
+        for (Long id : evicted) {
+            synchronized (this) {
+                if (files.containsKey(id)) {
+                    continue; // 待っている間に取り直された
+                }
+            }
+            try {
+                Files.deleteIfExists(pathOf(id));
+            } catch (IOException e) {
+                LOG.warn("image.evict_failed", "msg", "画像の削除に失敗しました", "recipeId", id, "error", e);
+            }
+        }
+    }
+
+    /**
+     * 起動時に保存済みのファイルを読み込みます。更新日時の古いものほど先に削除されるように並べます。
+     */
+    private void loadExistingFiles() {
+        try {
+            Files.createDirectories(dir);
+            List<Path> existing;
+            try (var stream = Files.list(dir)) {
+                existing = stream.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).toList();
+            }
+            List<Path> sorted = new ArrayList<>(existing);
+            sorted.sort((a, b) -> Long.compare(a.toFile().lastModified(), b.toFile().lastModified()));
+            for (Path path : sorted) {
+                String name = path.getFileName().toString();
+                try {
+                    add(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())), Files.size(path));
+                } catch (NumberFormatException e) {
+                    // キャッシュ以外のファイルは無視する
+                }
+            }
+            LOG.info("image.cache.loaded", "msg", "保存済みの画像を読み込みました", "files", size(), "bytes", totalBytes(), "path", dir.toString());
+        } catch (IOException e) {
+            LOG.warn("image.cache.load_failed", "msg", "画像キャッシュのディレクトリを読み込めませんでした", "path", dir.toString(), "error", e);
+        }
+    }
+
+    private Path pathOf(long recipeId) {
+        return dir.resolve(recipeId + SUFFIX);
+    }
+}
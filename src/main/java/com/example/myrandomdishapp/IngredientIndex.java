@@ -0,0 +1,167 @@
+package com.example.myrandomdishapp;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.random.RandomGenerator;
+import java.util.regex.Pattern;
+
+/**
+ * 材料名からレシピを引くための不変の転置インデックス。
+ * プール内のレシピに連番を振り、正規化した材料名ごとに該当するレシピの集合を {@link BitSet} で保持します。
+ * 「鶏肉を使い、卵を使わない」といった条件は、ビット列の AND / ANDNOT だけで絞り込めます。
+ */
+public final class IngredientIndex {
+
+    // 括弧書きの補足（例: 「鶏もも肉(皮なし)」）
+    private static final Pattern BRACKETED = Pattern.compile("\\([^)]*\\)|【[^】]*】|「[^」]*」");
+    // 先頭のグループ記号（例: 「A醤油」「★砂糖」）
+    private static final Pattern LEADING_MARKS = Pattern.compile("^(?:[\\s★☆●○◎◆◇■□▲△・*※〇]|[a-z](?![a-z]))+");
+    // 検索語ごとの結果を覚えておく件数の上限。任意の検索語を送られてもメモリを使い続けないようにする
+    private static final int TERM_CACHE_MAX_ENTRIES = (int) EnvConfig.getLong("INGREDIENT_TERM_CACHE_MAX_ENTRIES", 1024);
+
+    static final IngredientIndex EMPTY = build(Map.of());
+
+    // 連番 → レシピ（と、そのレシピが属するカテゴリ）
+    private final RecipePool.PoolPick[] recipes;
+    // 正規化した材料名 → その材料を使うレシピの集合
+    private final Map<String, BitSet> byIngredient;
+    // 検索語 → 材料名にその語を含むレシピの集合。同じ検索語を何度も走査しないよう、よく使われるものだけ覚えておく。
+    // インデックスはプールの更新時に作り直されるため、有効期限は実質的に無期限とする
+    private final TtlLruCache<String, BitSet> termCache = new TtlLruCache<>(TERM_CACHE_MAX_ENTRIES, 1, TimeUnit.DAYS);
+
+    private IngredientIndex(RecipePool.PoolPick[] recipes, Map<String, BitSet> byIngredient) {
+        this.recipes = recipes;
+        this.byIngredient = byIngredient;
+    }
+
+    /**
+     * プールの内容からインデックスを構築します。同じレシピID のレシピが複数のカテゴリにある場合は1件として扱います。
+     *
+     * @param entries カテゴリパス → プールのエントリ
+     * @return 構築したインデックス
+     */
+    public static IngredientIndex build(Map<String, RecipePool.PoolEntry> entries) {
+        List<RecipePool.PoolPick> list = new ArrayList<>();
+        Map<String, BitSet> byIngredient = new HashMap<>();
+        Set<Long> seenRecipeIds = new HashSet<>();
+
+        for (Map.Entry<String, RecipePool.PoolEntry> entry : entries.entrySet()) {
+            List<Recipe> recipes = entry.getValue().recipes();
+            for (int i = 0; i < recipes.size(); i++) {
+                Recipe recipe = recipes.get(i);
+                if (recipe.recipeId() != 0 && !seenRecipeIds.add(recipe.recipeId())) {
+                    continue;
+                }
+                int ordinal = list.size();
+                list.add(new RecipePool.PoolPick(entry.getKey(), recipe, entry.getValue().payloads().get(i)));
+                for (String material : recipe.materials()) {
+                    String key = normalize(material);
+                    if (!key.isEmpty()) {
+                        byIngredient.computeIfAbsent(key, k -> new BitSet()).set(ordinal);
+                    }
+                }
+            }
+        }
+        return new IngredientIndex(list.toArray(new RecipePool.PoolPick[0]), byIngredient);
+    }
+
+    /**
+     * 材料名を比較用に正規化します。
+     * 全角・半角の統一（NFKC）、カタカナのひらがな化、「★」「(A)」などの記号や括弧書きの除去を行います。
+     *
+     * @param material 材料名
+     * @return 正規化した材料名（空の場合あり）
+     */
+    static String normalize(String material) {
+        String s = Normalizer.normalize(material, Normalizer.Form.NFKC).toLowerCase();
+        s = BRACKETED.matcher(s).replaceAll("");
+        s = LEADING_MARKS.matcher(s).replaceAll("");
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 'ァ' && c <= 'ヶ') {
+                sb.append((char) (c - 'ァ' + 'ぁ'));
+            } else if (!Character.isWhitespace(c)) {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return インデックスに登録されているレシピ数
+     */
+    public int size() {
+        return recipes.length;
+    }
+
+    /**
+     * 材料名に指定した語を含むレシピの集合を返します（返された BitSet は変更しないこと）。
+     */
+    private BitSet recipesContaining(String term) {
+        String normalized = normalize(term);
+        BitSet cached = termCache.get(normalized);
+        if (cached != null) {
+            return cached;
+        }
+        BitSet result = new BitSet(recipes.length);
+        if (!normalized.isEmpty()) {
+            // 「鶏肉」で「鶏もも肉」が見つからないことはあるが、「鶏」で「鶏もも肉」「鶏むね肉」の両方に一致させられる
+            for (Map.Entry<String, BitSet> entry : byIngredient.entrySet()) {
+                if (entry.getKey().contains(normalized)) {
+                    result.or(entry.getValue());
+                }
+            }
+        }
+        termCache.put(normalized, result);
+        return result;
+    }
+
+    /**
+     * 条件に合うレシピの集合を求めます。
+     *
+     * @param include すべてを材料に含むこと（空なら条件なし）
+     * @param exclude いずれも材料に含まないこと（空なら条件なし）
+     * @return 条件に合うレシピの連番の集合
+     */
+    BitSet matching(List<String> include, List<String> exclude) {
+        BitSet result = new BitSet(recipes.length);
+        result.set(0, recipes.length);
+        for (String term : include) {
+            result.and(recipesContaining(term));
+        }
+        for (String term : exclude) {
+            result.andNot(recipesContaining(term));
+        }
+        return result;
+    }
+
+    /**
+     * 条件に合うレシピから1件をランダムに選びます。
+     *
+     * @param include すべてを材料に含むこと
+     * @param exclude いずれも材料に含まないこと
+     * @param random 乱数生成器
+     * @return 選ばれたレシピ、または条件に合うレシピがない場合は null
+     */
+    public RecipePool.PoolPick pickRandom(List<String> include, List<String> exclude, RandomGenerator random) {
+        BitSet candidates = matching(include, exclude);
+        int count = candidates.cardinality();
+        if (count == 0) {
+            return null;
+        }
+        int skip = random.nextInt(count);
+        int ordinal = candidates.nextSetBit(0);
+        for (int i = 0; i < skip; i++) {
+            ordinal = candidates.nextSetBit(ordinal + 1);
+        }
+        return recipes[ordinal];
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.myrandomdishapp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * 楽天レシピAPIのレスポンスをストリームから直接読み取るデコーダ。
+ * JSON全体をオブジェクトツリーに展開せず、アプリで使用する項目だけを取り出して残りは読み飛ばします。
+ */
+public final class RakutenJsonDecoder {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final EventLog LOG = EventLog.get();
+
+    /**
+     * カテゴリ1件ごとに呼び出されるコールバック。
+     */
+    @FunctionalInterface
+    public interface CategoryConsumer {
+        void accept(int categoryId, int parentCategoryId);
+    }
+
+    private RakutenJsonDecoder() {
+    }
+
+    /**
+     * カテゴリ別ランキングAPIのレスポンスを読み取ります。
+     *
+     * @param in レスポンスボディ（読み取り後に閉じられます）
+     * @return レシピのリスト（変更不可）。"result" が配列でない場合は空リスト
+     * @throws IOException 読み込みまたはJSONの解析に失敗した場合
+     */
+    public static List<Recipe> decodeRanking(InputStream in) throws IOException {
+        List<Recipe> recipes = new ArrayList<>(4);
+        boolean resultFound = false;
+        try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("ランキングAPIのレスポンスがJSONオブジェクトではありません。");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("result".equals(field) && value == JsonToken.START_ARRAY) {
+                    resultFound = true;
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        recipes.add(readRecipe(parser));
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        if (!resultFound) {
+            LOG.warn("api.ranking.unexpected_format", "msg", "APIレスポンスの'result'キーが予期せぬ形式です。");
+        }
+        return Collections.unmodifiableList(recipes);
+    }
+
+    /**
+     * レシピオブジェクト1件を読み取ります。呼び出し時点で START_OBJECT に位置している必要があります。
+     */
+    private static Recipe readRecipe(JsonParser parser) throws IOException {
+        long recipeId = 0;
+        String title = null;
+        String foodImageUrl = null;
+        String mediumImageUrl = null;
+        String description = null;
+        List<String> materials = List.of();
+        String recipeUrl = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "recipeId" -> recipeId = parser.getValueAsLong();
+                case "recipeTitle" -> title = parser.getValueAsString();
+                case "foodImageUrl" -> foodImageUrl = parser.getValueAsString();
+                case "mediumImageUrl" -> mediumImageUrl = parser.getValueAsString();
+                case "recipeDescription" -> description = parser.getValueAsString();
+                case "recipeUrl" -> recipeUrl = parser.getValueAsString();
+                case "recipeMaterial" -> {
+                    if (value == JsonToken.START_ARRAY) {
+                        List<String> list = new ArrayList<>();
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            String material = parser.getValueAsString();
+                            if (material != null) {
+                                list.add(material);
+                            } else {
+                                parser.skipChildren();
+                            }
+                        }
+                        materials = list;
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+
+        // 画像URLは foodImageUrl を優先し、なければ mediumImageUrl を使う
+        String imageUrl = foodImageUrl != null ? foodImageUrl : (mediumImageUrl != null ? mediumImageUrl : "");
+        return new Recipe(recipeId,
+                title != null ? title : "（料理名不明）",
+                imageUrl,
+                description != null ? description : "説明はありません。",
+                materials,
+                recipeUrl != null ? recipeUrl : "");
+    }
+
+    /**
+     * カテゴリ一覧APIのレスポンスから、指定されたタイプのカテゴリIDと親カテゴリIDだけを読み取ります。
+     *
+     * @param in レスポンスボディ（読み取り後に閉じられます）
+     * @param categoryType 読み取るカテゴリのタイプ ("large", "medium", "small")
+     * @param consumer カテゴリ1件ごとに呼び出されるコールバック
+     * @return 読み取ったカテゴリ数
+     * @throws IOException 読み込みまたはJSONの解析に失敗した場合
+     */
+    public static int decodeCategories(InputStream in, String categoryType, CategoryConsumer consumer) throws IOException {
+        int count = 0;
+        boolean typeFound = false;
+        try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("カテゴリリストAPIのレスポンスがJSONオブジェクトではありません。");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (!"result".equals(field) || value != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    continue;
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String type = parser.currentName();
+                    JsonToken list = parser.nextToken();
+                    if (!categoryType.equals(type) || list != JsonToken.START_ARRAY) {
+                        parser.skipChildren();
+                        continue;
+                    }
+                    typeFound = true;
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        int categoryId = 0;
+                        int parentCategoryId = 0;
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String name = parser.currentName();
+                            parser.nextToken();
+                            if ("categoryId".equals(name)) {
+                                categoryId = parser.getValueAsInt();
+                            } else if ("parentCategoryId".equals(name)) {
+                                parentCategoryId = parser.getValueAsInt(); // 文字列で返される場合もある
+                            } else {
+                                parser.skipChildren();
+                            }
+                        }
+                        consumer.accept(categoryId, parentCategoryId);
+                        count++;
+                    }
+                }
+            }
+        }
+        if (!typeFound) {
+            LOG.warn("api.category.unexpected_format", "msg", "カテゴリリストAPIレスポンスの'result'またはカテゴリのキーが予期せぬ形式です。",
+                    "categoryType", categoryType);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.myrandomdishapp;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.random.RandomGenerator;
+
+/**
+ * 重複なしのランダム抽出を行うユーティリティ。
+ */
+public final class RandomSampling {
+
+    private RandomSampling() {
+    }
+
+    /**
+     * 0 以上 bound 未満の整数から、重複しない count 個をランダムな順序で選びます。
+     * Floyd のアルゴリズムを使うため、乱数の生成は count 回で済み、bound の大きさに比例した作業領域も不要です。
+     *
+     * @param bound 選択対象の範囲（0 以上）
+     * @param count 選ぶ個数。bound を超える場合は bound 個
+     * @param random 乱数生成器
+     * @return 選ばれた整数の配列
+     */
+    public static int[] distinctIndices(int bound, int count, RandomGenerator random) {
+        int k = Math.max(0, Math.min(count, bound));
+        int[] result = new int[k];
+        Set<Integer> chosen = new HashSet<>(k * 2);
+        int n = 0;
+        for (int j = bound - k; j < bound; j++) {
+            int t = random.nextInt(j + 1);
+            // t が選択済みなら j を選ぶ（j はまだ選ばれていないことが保証される）
+            int pick = chosen.add(t) ? t : j;
+            if (pick == j) {
+                chosen.add(j);
+            }
+            result[n++] = pick;
+        }
+        // Floyd のアルゴリズムは選ばれる集合は一様だが順序に偏りがあるため、並びを混ぜておく
+        for (int i = k - 1; i > 0; i--) {
+            int r = random.nextInt(i + 1);
+            int tmp = result[i];
+            result[i] = result[r];
+            result[r] = tmp;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.myrandomdishapp;
+
+/**
+ * APIの利用制限を守るための待機時間が上限を超えたため、呼び出しを行わなかったことを表す例外。
+ */
+public class RateLimitExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RateLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.myrandomdishapp;
+
+import java.util.List;
+
+/**
+ * ランキングAPIから取得した1件のレシピ。アプリで使用する項目だけを保持する不変オブジェクトです。
+ *
+ * @param recipeId レシピID（取得できない場合は 0）
+ * @param title 料理名
+ * @param foodImageUrl 画像URL（ない場合は空文字列）
+ * @param description レシピの説明
+ * @param materials 材料のリスト（変更不可）
+ * @param recipeUrl レシピURL（ない場合は空文字列）
+ */
+public record Recipe(long recipeId, String title, String foodImageUrl, String description,
+                     List<String> materials, String recipeUrl) {
+
+    public Recipe {
+        materials = List.copyOf(materials);
+    }
+
+    /**
+     * @return 材料を「、」区切りで結合した文字列。材料がない場合は既定の文言
+     */
+    public String materialText() {
+        return materials.isEmpty() ? "材料は不明です。" : String.join("、", materials);
+    }
+}
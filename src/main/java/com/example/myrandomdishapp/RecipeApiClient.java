@@ -1,289 +1,484 @@
 package com.example.myrandomdishapp; 
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.HashSet;
-import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
-
-import org.json.JSONArray;
-import org.json.JSONObject;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
 public class RecipeApiClient {
 
-    // ★重要★ ここにあなたの楽天アプリケーションIDを設定してください。
-    // 環境変数 'RAKUTEN_APP_ID' から読み込まれます。
-    private static final String RAKUTEN_APP_ID = System.getenv("RAKUTEN_APP_ID");
+    /**
+     * カテゴリ別ランキングの取得結果。
+     *
+     * @param recipes レシピ情報のリスト（変更不可）
+     * @param fetchedAtMillis APIから取得した時刻（エポックミリ秒）。キャッシュから返した場合も元の取得時刻のままです
+     */
+    public record Ranking(List<Recipe> recipes, long fetchedAtMillis) {
+    }
 
-    // 各APIのベースURL
-    private static final String BASE_URL_CATEGORY_RANKING = "https://app.rakuten.co.jp/services/api/Recipe/CategoryRanking/20170426";
-    private static final String BASE_URL_CATEGORY_LIST = "https://app.rakuten.co.jp/services/api/Recipe/CategoryList/20170426";
+    // 各APIの既定のベースURL。ローカルのスタブサーバなどに向ける場合は環境変数で上書きできる
+    private static final String DEFAULT_BASE_URL_CATEGORY_RANKING = "https://app.rakuten.co.jp/services/api/Recipe/CategoryRanking/20170426";
+    private static final String DEFAULT_BASE_URL_CATEGORY_LIST = "https://app.rakuten.co.jp/services/api/Recipe/CategoryList/20170426";
 
     // API呼び出し間の待機時間（ミリ秒）。楽天APIの利用制限（1秒1回）を遵守するため。
-    private static final long REQUEST_INTERVAL_MS = 1500;
+    static final long REQUEST_INTERVAL_MS = 1500;
+
+    // 利用制限の枠が空くまで待つ最大時間（ミリ秒）。これを超える場合は呼び出しを諦める。
+    private static final long RATE_LIMIT_MAX_WAIT_MS = EnvConfig.getLong("RATE_LIMIT_MAX_WAIT_MS", 3000);
+
+    // リクエスト送信から本文の解析完了までの時間の上限（ミリ秒）。HTTP_REQUEST_TIMEOUT_MS は応答ヘッダの受信までしか制限しないため、
+    // 本文の受信が止まった場合もこの時間で失敗させる
+    private static final long EXCHANGE_TIMEOUT_MS = EnvConfig.getLong("HTTP_EXCHANGE_TIMEOUT_MS", 10000);
+
+    private static final EventLog LOG = EventLog.get();
+
+    // すべてのAPI呼び出しが共有するレートリミッタ
+    private static final TokenBucketRateLimiter RATE_LIMITER =
+            new TokenBucketRateLimiter(REQUEST_INTERVAL_MS, TimeUnit.MILLISECONDS, 1);
+
+    // ランキング結果キャッシュの設定。ランキングの更新は多くても1日1回程度のため、既定では1時間保持する。
+    private static final long RANKING_CACHE_TTL_SECONDS = EnvConfig.getLong("RANKING_CACHE_TTL_SECONDS", 3600);
+    // 有効期限が切れた結果を、取り直している間やAPIの障害中に返すために保持しておく時間
+    private static final long RANKING_CACHE_STALE_SECONDS = EnvConfig.getLong("RANKING_CACHE_STALE_SECONDS", 86400);
+    private static final int RANKING_CACHE_MAX_ENTRIES = (int) EnvConfig.getLong("RANKING_CACHE_MAX_ENTRIES", 2000);
 
-    // ロードしたカテゴリデータを保持するためのMap
-    // キーはカテゴリID（String）、値はそのカテゴリのJSONObject
-    private Map<String, JSONObject> mediumCategories; // 中カテゴリデータ
-    private Map<String, JSONObject> smallCategories;  // 小カテゴリデータ
+    // 完全なカテゴリパス（largeID-mediumID-smallID）をキーとしたランキング結果のキャッシュ
+    private final TtlLruCache<String, Ranking> rankingCache =
+            new TtlLruCache<>(RANKING_CACHE_MAX_ENTRIES, RANKING_CACHE_TTL_SECONDS, RANKING_CACHE_STALE_SECONDS, TimeUnit.SECONDS);
+
+    // APIの障害時に呼び出しを止めるサーキットブレーカーの設定
+    private static final int CIRCUIT_FAILURE_THRESHOLD = (int) EnvConfig.getLong("CIRCUIT_FAILURE_THRESHOLD", 5);
+    private static final long CIRCUIT_OPEN_SECONDS = EnvConfig.getLong("CIRCUIT_OPEN_SECONDS", 30);
+
+    // 連続して失敗した場合は一定時間APIを呼び出さず、即座に失敗させる
+    private final CircuitBreaker circuitBreaker =
+            new CircuitBreaker("RakutenRecipeAPI", CIRCUIT_FAILURE_THRESHOLD, CIRCUIT_OPEN_SECONDS, TimeUnit.SECONDS);
+
+    // 取得中のランキング。同じカテゴリへの同時リクエストは1回のAPI呼び出しにまとめ、結果を共有する
+    private final ConcurrentHashMap<String, CompletableFuture<Ranking>> inFlightRankings =
+            new ConcurrentHashMap<>();
+
+    // ロードしたカテゴリの索引（未ロードの場合は null）。ロードのたびに新しい索引に丸ごと差し替える
+    private volatile CategoryIndex categoryIndex;
+
+    // ★重要★ 楽天アプリケーションIDは環境変数 'RAKUTEN_APP_ID' から読み込まれます。
+    private final String rakutenAppId;
+    private final String baseUrlCategoryRanking;
+    private final String baseUrlCategoryList;
+    private final RecipeHttpTransport transport;
+    private final DishMetrics metrics;
 
     public RecipeApiClient() {
+        this(DishMetrics.global());
+    }
+
+    /**
+     * 環境変数の設定でクライアントを作成します。
+     *
+     * @param metrics API呼び出しの計測値の記録先
+     */
+    public RecipeApiClient(DishMetrics metrics) {
+        this(EnvConfig.getString("RAKUTEN_APP_ID", null),
+                EnvConfig.getString("RAKUTEN_RANKING_BASE_URL", DEFAULT_BASE_URL_CATEGORY_RANKING),
+                EnvConfig.getString("RAKUTEN_CATEGORY_LIST_BASE_URL", DEFAULT_BASE_URL_CATEGORY_LIST),
+                new RecipeHttpTransport(), metrics);
+    }
+
+    /**
+     * @param rakutenAppId 楽天アプリケーションID
+     * @param baseUrlCategoryRanking カテゴリ別ランキングAPIのベースURL
+     * @param baseUrlCategoryList カテゴリ一覧APIのベースURL
+     * @param transport 通信に使用するトランスポート
+     * @param metrics API呼び出しの計測値の記録先
+     */
+    public RecipeApiClient(String rakutenAppId, String baseUrlCategoryRanking, String baseUrlCategoryList,
+                           RecipeHttpTransport transport, DishMetrics metrics) {
         // アプリケーションIDが環境変数に設定されているかを確認
-        if (RAKUTEN_APP_ID == null || RAKUTEN_APP_ID.isEmpty()) {
-            System.err.println("エラー: 環境変数 'RAKUTEN_APP_ID' が設定されていません。");
+        if (rakutenAppId == null || rakutenAppId.isEmpty()) {
+            LOG.warn("config.app_id_missing", "msg", "環境変数 'RAKUTEN_APP_ID' が設定されていません。");
             throw new IllegalStateException("楽天アプリケーションIDが設定されていません。アプリの環境変数設定を確認してください。");
         }
+        this.rakutenAppId = rakutenAppId;
+        this.baseUrlCategoryRanking = baseUrlCategoryRanking;
+        this.baseUrlCategoryList = baseUrlCategoryList;
+        this.transport = transport;
+        this.metrics = metrics;
+        metrics.registerCache("ranking", rankingCache);
+        metrics.registerGauge("rakuten.api.circuit.state", "サーキットブレーカーの状態（0: CLOSED, 1: OPEN, 2: HALF_OPEN）",
+                () -> circuitBreaker.getState().ordinal());
     }
 
     /**
      * 指定されたカテゴリIDのレシピランキングから料理名、画像URL、説明、材料、レシピURLのペアを取得します（最大4件）。
      *
      * @param categoryId レシピを取得したいカテゴリのID（例: "10-290-950" のように結合されたもの）
-     * @return 料理名("recipeTitle")、画像URL("foodImageUrl")、説明("recipeDescription")、材料("recipeMaterial")、レシピURL("recipeUrl")
-     * を含むMapのリスト。値がない場合は空文字列。
+     * @return 料理名、画像URL、説明、材料、レシピURLを含む {@link Recipe} のリストと、その取得時刻。
+     * 同じカテゴリの結果はキャッシュされ、有効期限内であればAPIを呼び出さずに返します。
+     * 有効期限切れの結果がある場合はそれを返し、裏で取り直します。
+     * キャッシュから返した場合の取得時刻は、APIから取得した時点のものです。
+     * 返されるリストは変更できません。
+     *
      * @throws Exception API呼び出しやJSON解析中に発生したエラー
      */
-    public List<Map<String, String>> getDishAndImageAndDetailsFromCategoryRanking(String categoryId) throws Exception {
-        List<Map<String, String>> recipesData = new ArrayList<>();
-        String encodedCategoryId = URLEncoder.encode(categoryId, StandardCharsets.UTF_8.toString());
-
-        String requestUrl = String.format("%s?applicationId=%s&categoryId=%s&format=json",
-                                        BASE_URL_CATEGORY_RANKING, RAKUTEN_APP_ID, encodedCategoryId);
+    public Ranking getDishAndImageAndDetailsFromCategoryRanking(String categoryId) throws Exception {
+        return await(getDishAndImageAndDetailsFromCategoryRankingAsync(categoryId));
+    }
 
-        System.out.println("APIリクエストURL (ランキング詳細): " + requestUrl); // デバッグ用ログ
+    /**
+     * {@link #getDishAndImageAndDetailsFromCategoryRanking(String)} の非同期版です。
+     * 呼び出しスレッドをブロックせずに、取得結果を CompletableFuture で返します。
+     *
+     * @param categoryId 完全なカテゴリパス（例: "10-290-950"）
+     * @return レシピ情報のリスト（変更不可）と取得時刻を返す CompletableFuture
+     */
+    public CompletableFuture<Ranking> getDishAndImageAndDetailsFromCategoryRankingAsync(String categoryId) {
+        Ranking cached = getCachedCategoryRanking(categoryId);
+        return cached != null ? CompletableFuture.completedFuture(cached) : fetchCoalesced(categoryId);
+    }
 
-        URL url;
-        try {
-            url = new URL(requestUrl);
-        } catch (Exception e) {
-            System.err.println("不正なURL形式です: " + requestUrl + " - " + e.getMessage());
-            throw new RuntimeException("APIリクエストURLの構築に失敗しました。", e);
+    /**
+     * キャッシュにあるランキングだけを返します。この呼び出しではAPIの応答を待ちません。
+     * 有効期限切れの結果を返す場合は、最新の結果を裏で取得してキャッシュを更新します（stale-while-revalidate）。
+     *
+     * @param categoryId 完全なカテゴリパス（例: "10-290-950"）
+     * @return キャッシュにあるランキング、またはない場合は null
+     */
+    public Ranking getCachedCategoryRanking(String categoryId) {
+        Ranking cached = rankingCache.get(categoryId);
+        if (cached != null) {
+            return cached;
         }
-
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("GET");
-        conn.connect();
-
-        int responseCode = conn.getResponseCode();
-        if (responseCode != HttpURLConnection.HTTP_OK) {
-            String errorResponse = "";
-            try (BufferedReader errIn = new BufferedReader(new InputStreamReader(conn.getErrorStream(), StandardCharsets.UTF_8))) {
-                String line;
-                while ((line = errIn.readLine()) != null) {
-                    errorResponse += line;
+        Ranking stale = rankingCache.getStale(categoryId);
+        if (stale != null) {
+            fetchCoalesced(categoryId).whenComplete((recipesData, error) -> {
+                if (error != null && !(unwrap(error) instanceof CircuitOpenException)) {
+                    LOG.warn("api.ranking.revalidate_failed", "msg", "ランキングの再取得に失敗しました", "category", categoryId, "error", unwrap(error));
                 }
-            } catch (Exception err) {
-                System.err.println("エラーレスポンスの読み込み中にエラーが発生: " + err.getMessage());
-            }
-            throw new RuntimeException("APIリクエスト失敗: HTTP error code : " + responseCode + ", Response: " + errorResponse);
+            });
         }
+        return stale;
+    }
+
+    /**
+     * キャッシュを参照せずにランキングAPIを呼び出し、取得結果でキャッシュを更新します。
+     * 同じカテゴリの取得が既に進行中であれば、新たに呼び出さずにその結果を共有します。
+     *
+     * @param categoryId 完全なカテゴリパス（例: "10-290-950"）
+     * @return レシピ情報のリスト（変更不可）と取得時刻を返す CompletableFuture
+     */
+    public CompletableFuture<Ranking> refreshCategoryRankingAsync(String categoryId) {
+        return fetchCoalesced(categoryId);
+    }
 
-        try (BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
-            StringBuilder response = new StringBuilder();
-            String inputLine;
-            while ((inputLine = in.readLine()) != null) {
-                response.append(inputLine);
+    /**
+     * キャッシュを参照せずにランキングAPIを呼び出し、取得結果でキャッシュを更新します。
+     * バックグラウンドでの定期更新に使用されます。
+     *
+     * @param categoryId 完全なカテゴリパス（例: "10-290-950"）
+     * @return レシピ情報のリスト（変更不可）と取得時刻
+     * @throws Exception API呼び出しやJSON解析中に発生したエラー
+     */
+    public Ranking refreshCategoryRanking(String categoryId) throws Exception {
+        return await(refreshCategoryRankingAsync(categoryId));
+    }
+
+    /**
+     * ランキングを取得してキャッシュに登録します。
+     * 同じカテゴリの取得が既に進行中であれば新たにAPIを呼び出さず、その結果を共有します。
+     * 呼び出し側がタイムアウト設定などで共有の結果を変更しないよう、コピーを返します。
+     */
+    private CompletableFuture<Ranking> fetchCoalesced(String categoryId) {
+        CompletableFuture<Ranking> mine = new CompletableFuture<>();
+        CompletableFuture<Ranking> existing = inFlightRankings.putIfAbsent(categoryId, mine);
+        if (existing != null) {
+            return existing.copy();
+        }
+
+        fetchCategoryRanking(categoryId).whenComplete((ranking, error) -> {
+            // キャッシュに登録してから取得中の一覧から外し、その間に重複した呼び出しが起きないようにする
+            if (error == null && !ranking.recipes().isEmpty()) {
+                rankingCache.put(categoryId, ranking);
+            }
+            inFlightRankings.remove(categoryId, mine);
+            if (error != null) {
+                mine.completeExceptionally(unwrap(error));
+            } else {
+                mine.complete(ranking);
             }
+        });
+        return mine.copy();
+    }
 
-            JSONObject jsonResponse = new JSONObject(response.toString());
-
-            // "result" キーが存在し、その値がJSON配列であることを確認
-            if (jsonResponse.has("result") && jsonResponse.get("result") instanceof JSONArray) {
-                JSONArray recipes = jsonResponse.getJSONArray("result"); // "result"直下の配列を取得
-                for (int i = 0; i < recipes.length(); i++) {
-                    JSONObject recipe = recipes.getJSONObject(i); // 各レシピオブジェクト
-                    Map<String, String> recipeInfo = new HashMap<>();
-                    
-                    // 料理名を取得
-                    if (recipe.has("recipeTitle")) {
-                        recipeInfo.put("recipeTitle", recipe.getString("recipeTitle"));
-                    } else {
-                        recipeInfo.put("recipeTitle", "（料理名不明）");
-                    }
-
-                    // 画像URLを取得（foodImageUrlを優先、mediumImageUrlも試す）
-                    if (recipe.has("foodImageUrl")) {
-                        recipeInfo.put("foodImageUrl", recipe.getString("foodImageUrl"));
-                    } else if (recipe.has("mediumImageUrl")) {
-                        recipeInfo.put("foodImageUrl", recipe.getString("mediumImageUrl"));
-                    } else {
-                        recipeInfo.put("foodImageUrl", ""); // 画像URLがない場合は空文字列
-                    }
-
-                    // レシピの説明を取得
-                    if (recipe.has("recipeDescription")) {
-                        recipeInfo.put("recipeDescription", recipe.getString("recipeDescription"));
-                    } else {
-                        recipeInfo.put("recipeDescription", "説明はありません。");
-                    }
-
-                    // 材料のリストを取得し、カンマ区切りの文字列に変換
-                    if (recipe.has("recipeMaterial") && recipe.get("recipeMaterial") instanceof JSONArray) {
-                        JSONArray materialsArray = recipe.getJSONArray("recipeMaterial");
-                        List<String> materialsList = new ArrayList<>();
-                        for (int j = 0; j < materialsArray.length(); j++) {
-                            materialsList.add(materialsArray.getString(j));
-                        }
-                        recipeInfo.put("recipeMaterial", String.join("、", materialsList)); // 材料を「、」区切りで結合
-                    } else {
-                        recipeInfo.put("recipeMaterial", "材料は不明です。");
-                    }
-
-                    // レシピURLを取得
-                    if (recipe.has("recipeUrl")) {
-                        recipeInfo.put("recipeUrl", recipe.getString("recipeUrl"));
-                    } else {
-                        recipeInfo.put("recipeUrl", ""); // URLがない場合は空文字列
-                    }
-                    
-                    recipesData.add(recipeInfo);
-                }
+    /**
+     * サーキットブレーカーを通してAPIを呼び出し、レスポンスを解析します。
+     * 結果（成功・失敗）はブレーカーに報告します。利用制限による見送りは失敗として数えません。
+     *
+     * @param api 計測用のAPIの種類（{@link DishMetrics#API_RANKING} など）
+     * @param uri リクエスト先
+     * @param parser レスポンスボディの解析処理
+     * @return 解析結果。ブレーカーが開いている場合は {@link CircuitOpenException} で失敗します。
+     */
+    private <T> CompletableFuture<T> callUpstream(String api, URI uri, Function<InputStream, T> parser) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            metrics.recordUpstreamRejected(api, "circuit_open");
+            return CompletableFuture.failedFuture(new CircuitOpenException(
+                    "APIの障害が続いているため、呼び出しを一時的に停止しています。"));
+        }
+        return sendRateLimited(api, uri, u -> exchange(api, u, parser)).whenComplete((result, error) -> {
+            if (error == null) {
+                circuitBreaker.recordSuccess();
+            } else if (unwrap(error) instanceof RateLimitExceededException) {
+                circuitBreaker.recordIgnored();
             } else {
-                System.err.println("APIレスポンスの'result'キーが予期せぬ形式です: " + jsonResponse.toString());
+                circuitBreaker.recordFailure();
             }
-        } finally {
-            conn.disconnect(); // HTTP接続を閉じる
+        });
+    }
+
+    /**
+     * リクエストを送信し、レスポンスボディをトランスポートの読み込み用エグゼキュータで解析します。
+     * 送信から解析完了までを EXCHANGE_TIMEOUT_MS で打ち切り、打ち切った場合は本文のストリームを閉じて読み込み中のスレッドを解放します。
+     */
+    private <T> CompletableFuture<T> exchange(String api, URI uri, Function<InputStream, T> parser) {
+        CompletableFuture<InputStream> response = sendTimed(api, uri);
+        return response.thenApplyAsync(body -> {
+            long start = System.nanoTime();
+            try {
+                return parser.apply(body);
+            } finally {
+                metrics.recordDecode(api, System.nanoTime() - start);
+            }
+        }, transport.bodyExecutor()).orTimeout(EXCHANGE_TIMEOUT_MS, TimeUnit.MILLISECONDS).whenComplete((result, error) -> {
+            if (error != null && unwrap(error) instanceof TimeoutException) {
+                response.thenAccept(RecipeApiClient::closeQuietly);
+            }
+        });
+    }
+
+    private static void closeQuietly(InputStream body) {
+        try {
+            body.close();
+        } catch (IOException e) {
+            // 打ち切った後のため、閉じられなくても結果は変わらない
         }
-        return recipesData;
     }
 
     /**
-     * カテゴリリストAPIを呼び出し、指定されたカテゴリタイプ（large, medium, small）のカテゴリデータを取得します。
+     * 共有レートリミッタで枠を予約し、枠が使えるようになった時点で send を呼び出してリクエストを送信します。
+     * 待機はスレッドをブロックせず、遅延実行で行います。
+     *
+     * @param api 計測用のAPIの種類
+     * @param uri リクエスト先
+     * @param send リクエストの送信と応答の処理
+     * @return send の結果。待機時間の上限内に枠が空かない場合は {@link RateLimitExceededException} で失敗します。
+     */
+    private <T> CompletableFuture<T> sendRateLimited(String api, URI uri, Function<URI, CompletableFuture<T>> send) {
+        long waitNanos = RATE_LIMITER.tryReserve(RATE_LIMIT_MAX_WAIT_MS, TimeUnit.MILLISECONDS);
+        if (waitNanos < 0) {
+            metrics.recordUpstreamRejected(api, "rate_limited");
+            return CompletableFuture.failedFuture(new RateLimitExceededException(
+                    "API呼び出しの利用制限により待機時間の上限（" + RATE_LIMIT_MAX_WAIT_MS + "ms）を超えました。"));
+        }
+        metrics.recordRateLimitWait(waitNanos);
+        if (waitNanos == 0) {
+            return send.apply(uri);
+        }
+        Executor delayed = CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS);
+        return CompletableFuture.supplyAsync(() -> uri, delayed).thenCompose(send);
+    }
+
+    /**
+     * リクエストを送信し、応答ヘッダを受信するまでの時間を記録します。
+     */
+    private CompletableFuture<InputStream> sendTimed(String api, URI uri) {
+        long start = System.nanoTime();
+        return transport.getAsync(uri).whenComplete((body, error) ->
+                metrics.recordUpstreamCall(api, error == null ? null : unwrap(error), System.nanoTime() - start));
+    }
+
+    /**
+     * ランキングAPIを呼び出してレシピ一覧を取得します（キャッシュは参照しません）。
+     */
+    private CompletableFuture<Ranking> fetchCategoryRanking(String categoryId) {
+        String encodedCategoryId = URLEncoder.encode(categoryId, StandardCharsets.UTF_8);
+
+        String requestUrl = String.format("%s?applicationId=%s&categoryId=%s&format=json",
+                                        baseUrlCategoryRanking, rakutenAppId, encodedCategoryId);
+
+        if (LOG.sampled()) {
+            LOG.info("api.request", "api", DishMetrics.API_RANKING, "url", requestUrl); // アプリケーションIDは出力時に伏せる
+        }
+
+        URI uri;
+        try {
+            uri = URI.create(requestUrl);
+        } catch (IllegalArgumentException e) {
+            LOG.warn("api.request.invalid_url", "msg", "不正なURL形式です", "url", requestUrl, "error", e);
+            return CompletableFuture.failedFuture(new RuntimeException("APIリクエストURLの構築に失敗しました。", e));
+        }
+
+        return callUpstream(DishMetrics.API_RANKING, uri, RecipeApiClient::parseRankingResponse)
+                .thenApply(recipes -> new Ranking(recipes, System.currentTimeMillis()));
+    }
+
+    /**
+     * ランキングAPIのレスポンスをストリームのまま解析し、レシピのリストに変換します。
+     */
+    private static List<Recipe> parseRankingResponse(InputStream body) {
+        try (InputStream in = body) {
+            return RakutenJsonDecoder.decodeRanking(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * CompletableFuture の完了を待ち、失敗した場合は元の例外をそのまま送出します。
+     */
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = unwrap(e);
+            throw cause instanceof Exception ? (Exception) cause : new RuntimeException(cause);
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    /**
+     * @return APIの呼び出しに使用するサーキットブレーカー
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * ランキング結果キャッシュへのアクセスを提供します（件数やヒット率の確認用）。
+     *
+     * @return ランキング結果キャッシュ
+     */
+    public TtlLruCache<String, Ranking> getRankingCache() {
+        return rankingCache;
+    }
+
+    /**
+     * カテゴリリストAPIを呼び出し、指定されたカテゴリタイプ（large, medium, small）のカテゴリIDと親カテゴリIDを取得します。
      *
      * @param categoryType 取得したいカテゴリのタイプ ("large", "medium", "small")
-     * @return カテゴリIDをキー、そのカテゴリのJSONObjectを値とするマップ
+     * @return カテゴリIDと親カテゴリIDの組
      * @throws Exception API呼び出し中のエラー
      */
-    private Map<String, JSONObject> getCategoryDataByType(String categoryType) throws Exception {
-        Map<String, JSONObject> categoryMap = new HashMap<>();
+    private CategoryIndex.IdPairs getCategoryDataByType(String categoryType) throws Exception {
         String requestUrl = String.format("%s?applicationId=%s&categoryType=%s&format=json",
-                                        BASE_URL_CATEGORY_LIST, RAKUTEN_APP_ID, categoryType);
+                                        baseUrlCategoryList, rakutenAppId, categoryType);
 
-        System.out.println("カテゴリリストAPIリクエストURL (" + categoryType + "): " + requestUrl); // デバッグ用ログ
+        LOG.info("api.request", "api", DishMetrics.API_CATEGORY_LIST, "url", requestUrl); // アプリケーションIDは出力時に伏せる
 
-        URL url;
+        URI uri;
         try {
-            url = new URL(requestUrl);
-        } catch (Exception e) {
-            System.err.println("不正なURL形式です: " + requestUrl + " - " + e.getMessage());
+            uri = URI.create(requestUrl);
+        } catch (IllegalArgumentException e) {
+            LOG.warn("api.request.invalid_url", "msg", "不正なURL形式です", "url", requestUrl, "error", e);
             throw new RuntimeException("カテゴリリストAPIのURL構築に失敗しました。", e);
         }
 
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("GET");
-        conn.connect();
-
-        int responseCode = conn.getResponseCode();
-        if (responseCode != HttpURLConnection.HTTP_OK) {
-            String errorResponse = "";
-            try (BufferedReader errIn = new BufferedReader(new InputStreamReader(conn.getErrorStream(), StandardCharsets.UTF_8))) {
-                String line;
-                while ((line = errIn.readLine()) != null) {
-                    errorResponse += line;
-                }
-            } catch (Exception err) {
-                System.err.println("エラーレスポンスの読み込み中にエラーが発生: " + err.getMessage());
-            }
-            throw new RuntimeException("カテゴリリストAPIリクエスト失敗: HTTP error code : " + responseCode + ", Response: " + errorResponse);
-        }
-
-        try (BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
-            StringBuilder response = new StringBuilder();
-            String inputLine;
-            while ((inputLine = in.readLine()) != null) {
-                response.append(inputLine);
-            }
-
-            JSONObject jsonResponse = new JSONObject(response.toString());
+        return await(callUpstream(DishMetrics.API_CATEGORY_LIST, uri, body -> parseCategoryResponse(body, categoryType)));
+    }
 
-            if (jsonResponse.has("result") && jsonResponse.getJSONObject("result").has(categoryType)) {
-                JSONArray categories = jsonResponse.getJSONObject("result").getJSONArray(categoryType);
-                for (int i = 0; i < categories.length(); i++) {
-                    JSONObject category = categories.getJSONObject(i);
-                    // categoryId を Integer として取得し、String に変換
-                    String categoryId = String.valueOf(category.getInt("categoryId"));
-                    categoryMap.put(categoryId, category);
-                }
-            } else {
-                System.err.println("カテゴリリストAPIレスポンスの'result'または'" + categoryType + "'キーが予期せぬ形式です: " + jsonResponse.toString());
-            }
-        } finally {
-            conn.disconnect();
+    /**
+     * カテゴリリストAPIのレスポンスをストリームのまま解析し、カテゴリIDと親カテゴリIDの組だけを取り出します。
+     */
+    private static CategoryIndex.IdPairs parseCategoryResponse(InputStream body, String categoryType) {
+        CategoryIndex.IdPairs pairs = new CategoryIndex.IdPairs();
+        try (InputStream in = body) {
+            RakutenJsonDecoder.decodeCategories(in, categoryType, pairs::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        return categoryMap;
+        return pairs;
     }
 
     /**
-     * アプリ起動時にMedium, Smallカテゴリデータをロードします。
+     * アプリ起動時にMedium, Smallカテゴリデータをロードし、カテゴリ索引を構築します。
      * LargeカテゴリはMediumカテゴリの親IDから取得するため、直接呼び出しは不要です。
      *
      * @throws Exception API呼び出し中のエラー
      */
     public void loadAllCategories() throws Exception {
+        // API呼び出し間隔は共有レートリミッタで調整される
         // Mediumカテゴリのロード
-        mediumCategories = getCategoryDataByType("medium");
-        TimeUnit.MILLISECONDS.sleep(REQUEST_INTERVAL_MS); // API呼び出し間隔を設ける
+        CategoryIndex.IdPairs mediumCategories = getCategoryDataByType("medium");
 
         // Smallカテゴリのロード
-        smallCategories = getCategoryDataByType("small");
-        TimeUnit.MILLISECONDS.sleep(REQUEST_INTERVAL_MS); // API呼び出し間隔を設ける
+        CategoryIndex.IdPairs smallCategories = getCategoryDataByType("small");
 
-        System.out.println("Medium: " + mediumCategories.size() + ", Small: " + smallCategories.size() + " カテゴリのロードが完了しました。");
+        CategoryIndex index = CategoryIndex.build(mediumCategories, smallCategories);
+        if (index.size() == 0) {
+            // 空の結果で既存の索引を上書きしないようにする
+            LOG.warn("category.load.empty", "msg", "カテゴリ索引が空のため、ロード済みのカテゴリデータを維持します。");
+            return;
+        }
+        categoryIndex = index;
+        LOG.info("category.loaded", "msg", "カテゴリのロードが完了しました。", "medium", mediumCategories.size(), "small", smallCategories.size());
     }
 
     /**
-     * 指定された小カテゴリIDから、そのカテゴリの完全なパスID（largeID-mediumID-smallID）を生成します。
+     * 指定された小カテゴリIDから、そのカテゴリの完全なパスID（largeID-mediumID-smallID）を返します。
+     * パスはカテゴリのロード時に生成済みのものを返します。
      *
      * @param smallCategoryId 小カテゴリID
      * @return largeID-mediumID-smallID形式の文字列、または null（パスが見つからない場合）
      */
-    public String getFullCategoryIdPath(String smallCategoryId) {
+    public String getFullCategoryIdPath(int smallCategoryId) {
+        CategoryIndex index = categoryIndex;
         // カテゴリデータがロードされているかを確認
-        if (smallCategories == null || mediumCategories == null) {
-            System.err.println("カテゴリデータがロードされていません（MediumまたはSmallがnull）。");
+        if (index == null) {
+            LOG.warn("category.not_loaded", "msg", "カテゴリデータがロードされていません。");
             return null;
         }
-
-        JSONObject smallCat = smallCategories.get(smallCategoryId);
-        if (smallCat == null) {
-            System.err.println("指定された小カテゴリIDが見つかりません: " + smallCategoryId);
-            return null;
+        String path = index.fullPathOf(smallCategoryId);
+        if (path == null) {
+            LOG.warn("category.path_missing", "msg", "指定された小カテゴリIDの完全なパスが見つかりません", "smallId", smallCategoryId);
         }
+        return path;
+    }
 
-        // 小カテゴリの親カテゴリID（MediumカテゴリのID）を取得
-        String mediumParentId = String.valueOf(smallCat.getInt("parentCategoryId"));
-        JSONObject mediumCat = mediumCategories.get(mediumParentId);
-
-        if (mediumCat == null) {
-            System.err.println("中カテゴリ（親）が見つかりません: " + mediumParentId + " for small: " + smallCategoryId);
-            return null;
-        }
-
-        // 中カテゴリの親カテゴリID（LargeカテゴリのID）を取得
-        String largeParentId = String.valueOf(mediumCat.getInt("parentCategoryId"));
-        // largeCat の JSONObject 自体は不要（IDのみ利用）
-
-        // largeID-mediumID-smallID の形式で結合して返す
-        return largeParentId + "-" + mediumParentId + "-" + smallCategoryId;
+    /**
+     * ロードされたカテゴリ索引へのアクセスを提供します。
+     * DishControllerから、献立のカテゴリをランダムに選ぶために使用されます。
+     *
+     * @return カテゴリ索引、または null（未ロードの場合）
+     */
+    public CategoryIndex getCategoryIndex() {
+        return categoryIndex;
     }
 
     /**
-     * ロードされた小カテゴリデータへのアクセスを提供します。
-     * DishControllerから、ロード済みの小カテゴリIDリストを取得するために使用されます。
+     * スナップショットから読み込んだカテゴリ索引を設定します。APIは呼び出しません。
+     * 以降 {@link #loadAllCategories()} が成功すると、最新のデータで置き換えられます。
      *
-     * @return ロードされた小カテゴリのMap<categoryId, JSONObject>、または null（未ロードの場合）
+     * @param index 復元したカテゴリ索引
      */
-    public Map<String, JSONObject> getSmallCategoryData() {
-        return smallCategories;
+    public void restoreCategories(CategoryIndex index) {
+        categoryIndex = index;
+        LOG.info("category.restored", "msg", "スナップショットからカテゴリを復元しました。", "medium", index.mediumCount(), "small", index.smallCount());
     }
 
     /**
@@ -292,54 +487,21 @@ public class RecipeApiClient {
      * @return ロード済みであれば true
      */
     public boolean areCategoriesLoaded() {
-        return mediumCategories != null && smallCategories != null;
+        return categoryIndex != null;
     }
 
     /**
-     * すべての小カテゴリから、ランキング上位の料理名を取得し、一つのセットにまとめます。
-     * このメソッドは、すべての小カテゴリのランキングレシピを網羅的に取得する際に使用します。
-     * (現在のアプリケーションの仕様では、このメソッドは直接利用されません)
+     * ロード済みのすべての小カテゴリについて、完全なカテゴリパス（largeID-mediumID-smallID）を返します。
+     * バックグラウンドでレシピプールを構築する {@link RecipePoolIndexer} の巡回対象として使用されます。
      *
-     * @return 取得したすべてのユニークな料理名のセット
+     * @return 完全なカテゴリパスのリスト（未ロードの場合は空リスト）
      */
-    public Set<String> getAllDishNamesFromAllCategories() {
-        Set<String> allDishNames = new HashSet<>();
-        List<String> smallCategoryIds = new ArrayList<>();
-
-        try {
-            // getSmallCategoryData() からカテゴリIDのみを抽出し、リストにする
-            Map<String, JSONObject> smallCats = getSmallCategoryData();
-            if (smallCats != null) {
-                smallCategoryIds = new ArrayList<>(smallCats.keySet());
-                Collections.shuffle(smallCategoryIds); // ランダム性を高めるためにシャッフル
-            } else {
-                System.err.println("getAllDishNamesFromAllCategories: Smallカテゴリデータがロードされていません。");
-                return allDishNames;
-            }
-        } catch (Exception e) { // NullPointerExceptionの可能性も考慮しExceptionで捕捉
-            System.err.println("getAllDishNamesFromAllCategories: 小カテゴリIDの取得中にエラーが発生しました: " + e.getMessage());
-            e.printStackTrace();
-            return allDishNames;
-        }
-
-        for (String categoryId : smallCategoryIds) {
-            try {
-                // 完全なカテゴリパスを生成
-                String fullCategoryId = getFullCategoryIdPath(categoryId);
-                if (fullCategoryId != null) {
-                    // 料理名と画像のペアを取得するメソッドを呼び出す
-                    List<Map<String, String>> recipesWithDetails = getDishAndImageAndDetailsFromCategoryRanking(fullCategoryId);
-                    for (Map<String, String> recipe : recipesWithDetails) {
-                        if (recipe.containsKey("recipeTitle")) {
-                            allDishNames.add(recipe.get("recipeTitle"));
-                        }
-                    }
-                    TimeUnit.MILLISECONDS.sleep(REQUEST_INTERVAL_MS); // API呼び出し間隔を設ける
-                }
-            } catch (Exception e) {
-                System.err.println("getAllDishNamesFromAllCategories: カテゴリID " + categoryId + " からの料理名取得に失敗しました: " + e.getMessage());
-            }
+    public List<String> getAllFullCategoryIdPaths() {
+        CategoryIndex index = categoryIndex;
+        if (index == null) {
+            LOG.warn("category.not_loaded", "msg", "カテゴリデータがロードされていません。");
+            return List.of();
         }
-        return allDishNames;
+        return index.allPaths();
     }
 }
\ No newline at end of file
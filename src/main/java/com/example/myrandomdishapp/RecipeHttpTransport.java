@@ -0,0 +1,121 @@
+package com.example.myrandomdishapp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 楽天APIとの通信を担うHTTPトランスポート。
+ * 共有の {@link HttpClient} により接続をキープアライブで再利用し、gzip圧縮と接続・応答のタイムアウトに対応します。
+ *
+ * <p>レスポンスボディの読み込みはブロッキングのため、{@link HttpClient} のスレッドではなく {@link #bodyExecutor()} で行います。
+ * 本文の受信が止まっても、HttpClient の通信処理が巻き込まれて止まることはありません。
+ */
+public class RecipeHttpTransport {
+
+    private static final long CONNECT_TIMEOUT_MS = EnvConfig.getLong("HTTP_CONNECT_TIMEOUT_MS", 2000);
+    private static final long REQUEST_TIMEOUT_MS = EnvConfig.getLong("HTTP_REQUEST_TIMEOUT_MS", 5000);
+
+    private static final EventLog LOG = EventLog.get();
+
+    // レスポンスボディを読み込むスレッド。受信が止まった本文に占有されても他の読み込みが待たされないよう、必要に応じて増やす
+    private static final ExecutorService BODY_EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "http-body-reader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final HttpClient httpClient;
+    private final Duration requestTimeout;
+
+    public RecipeHttpTransport() {
+        this(Duration.ofMillis(CONNECT_TIMEOUT_MS), Duration.ofMillis(REQUEST_TIMEOUT_MS));
+    }
+
+    /**
+     * @param connectTimeout 接続確立のタイムアウト
+     * @param requestTimeout リクエスト送信からレスポンスヘッダ受信までのタイムアウト
+     */
+    public RecipeHttpTransport(Duration connectTimeout, Duration requestTimeout) {
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * GETリクエストを非同期に送信し、レスポンスボディ（gzipの場合は展開済み）のストリームを返します。
+     * 呼び出し側はストリームを必ず閉じてください。
+     *
+     * @param uri リクエスト先
+     * @return レスポンスボディのストリーム。200以外の場合は {@link UpstreamHttpException} で失敗します。
+     */
+    public CompletableFuture<InputStream> getAsync(URI uri) {
+        return getAsync(uri, "application/json");
+    }
+
+    /**
+     * Accept ヘッダを指定してGETリクエストを非同期に送信します（画像の取得など）。
+     *
+     * @param uri リクエスト先
+     * @param accept Accept ヘッダの値
+     * @return レスポンスボディのストリーム。200以外の場合は {@link UpstreamHttpException} で失敗します。
+     */
+    public CompletableFuture<InputStream> getAsync(URI uri, String accept) {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(requestTimeout)
+                .header("Accept", accept)
+                .header("Accept-Encoding", "gzip")
+                .GET()
+                .build();
+
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
+                .thenApplyAsync(RecipeHttpTransport::decodeBody, BODY_EXECUTOR);
+    }
+
+    /**
+     * レスポンスボディの読み込みに使用するエグゼキュータを返します。
+     * {@link #getAsync(URI)} が返したストリームを読む処理は、このエグゼキュータ上で実行してください。
+     */
+    public Executor bodyExecutor() {
+        return BODY_EXECUTOR;
+    }
+
+    private static InputStream decodeBody(HttpResponse<InputStream> response) {
+        if (response.statusCode() != 200) {
+            throw new UpstreamHttpException(response.statusCode(), readErrorBody(response));
+        }
+        try {
+            return isGzip(response) ? new GZIPInputStream(response.body(), 8192) : response.body();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String readErrorBody(HttpResponse<InputStream> response) {
+        try (InputStream in = isGzip(response) ? new GZIPInputStream(response.body()) : response.body()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException err) {
+            LOG.warn("api.error_body.read_failed", "msg", "エラーレスポンスの読み込み中にエラーが発生", "error", err);
+            return "";
+        }
+    }
+
+    private static boolean isGzip(HttpResponse<?> response) {
+        return response.headers().firstValue("Content-Encoding")
+                .map(v -> v.equalsIgnoreCase("gzip"))
+                .orElse(false);
+    }
+}
@@ -0,0 +1,341 @@
+package com.example.myrandomdishapp;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.random.RandomGenerator;
+
+/**
+ * バックグラウンドで収集したレシピをカテゴリパスごとに保持するプール。
+ * リクエスト処理スレッドからはAPIを呼び出さずにランダムなレシピを取り出せます。
+ */
+public class RecipePool {
+
+    /**
+     * プール内の1カテゴリ分のデータ。
+     *
+     * @param recipes ランキングから取得したレシピ（変更不可）
+     * @param fetchedAtMillis 取得時刻（エポックミリ秒）
+     * @param payloads recipes と同じ順序の、生成済みのレスポンスボディ（変更不可）
+     */
+    public record PoolEntry(List<Recipe> recipes, long fetchedAtMillis, List<DishPayload> payloads) {
+
+        /**
+         * レスポンスボディを生成してエントリを作成します。
+         */
+        public PoolEntry(List<Recipe> recipes, long fetchedAtMillis) {
+            this(recipes, fetchedAtMillis, DishPayload.ofAll(recipes));
+        }
+    }
+
+    /**
+     * プールから選ばれたレシピ。
+     *
+     * @param categoryPath 完全なカテゴリパス（largeID-mediumID-smallID）
+     * @param recipe 選ばれたレシピ
+     * @param payload そのレシピのレスポンスボディ
+     */
+    public record PoolPick(String categoryPath, Recipe recipe, DishPayload payload) {
+    }
+
+    private final ConcurrentHashMap<String, PoolEntry> entries = new ConcurrentHashMap<>();
+    // ランダム選択用の、レシピが登録されているカテゴリパスの一覧（変更不可）。
+    // カテゴリの追加・削除のときだけ丸ごと差し替えるため書き込みは少なく、読み取り側は一貫した一覧を参照できる
+    private volatile List<String> categoryPaths = List.of();
+    // カテゴリがリクエストで選ばれた頻度。定期的に半減させ、最近よく選ばれるカテゴリほど大きな値になる
+    private final FrequencySketch requestFrequency = new FrequencySketch(4096);
+    // 画像プロキシが取得元を引くための、レシピID → 元の画像URL。プール内のいずれかのカテゴリにあるレシピだけを対象にする
+    private final ConcurrentHashMap<Long, String> imageUrls = new ConcurrentHashMap<>();
+
+    // プール内のレシピが変わるたびに増える版数。材料インデックスが古くなったかの判定に使用する
+    private final AtomicLong version = new AtomicLong();
+    private volatile IngredientIndex ingredientIndex = IngredientIndex.EMPTY;
+    private volatile long ingredientIndexVersion;
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    /**
+     * カテゴリのレシピを登録（または更新）します。
+     * 空のリストが渡された場合は取得時刻のみを更新し、既存のレシピは保持します。
+     * 取得に失敗した場合は呼び出さず、既存のデータと取得時刻をそのまま残してください。
+     *
+     * @param categoryPath 完全なカテゴリパス
+     * @param recipes レシピ一覧（ランキングにレシピがなかった場合は空リスト）
+     */
+    public void put(String categoryPath, List<Recipe> recipes) {
+        put(categoryPath, recipes, System.currentTimeMillis());
+    }
+
+    /**
+     * APIから取得した時刻を指定してカテゴリのレシピを登録します。
+     * キャッシュから返された古い結果で、より新しいデータを上書きしたり、取得時刻を進めたりしないようにするために使用します。
+     * 既に同じ時刻以降に取得したレシピがある場合は何もしません。
+     *
+     * @param categoryPath 完全なカテゴリパス
+     * @param recipes レシピ一覧（ランキングにレシピがなかった場合は空リスト）
+     * @param fetchedAtMillis APIから取得した時刻（エポックミリ秒）
+     */
+    public void put(String categoryPath, List<Recipe> recipes, long fetchedAtMillis) {
+        if (recipes == null || recipes.isEmpty()) {
+            entries.merge(categoryPath, new PoolEntry(List.of(), fetchedAtMillis),
+                    (previous, empty) -> previous.fetchedAtMillis() >= fetchedAtMillis ? previous
+                            : new PoolEntry(previous.recipes(), fetchedAtMillis, previous.payloads()));
+            return;
+        }
+        PoolEntry[] previous = new PoolEntry[1];
+        PoolEntry updated = entries.compute(categoryPath, (path, current) -> {
+            previous[0] = current;
+            if (current == null) {
+                return new PoolEntry(List.copyOf(recipes), fetchedAtMillis);
+            }
+            if (!current.recipes().isEmpty() && current.fetchedAtMillis() >= fetchedAtMillis) {
+                return current;
+            }
+            // レシピのなかったエントリに古い取得結果を登録する場合も、取得時刻は戻さない
+            long fetchedAt = Math.max(current.fetchedAtMillis(), fetchedAtMillis);
+            if (current.recipes().equals(recipes)) {
+                // 同じレシピであれば、生成済みのレスポンスボディをそのまま使う
+                return new PoolEntry(current.recipes(), fetchedAt, current.payloads());
+            }
+            return new PoolEntry(List.copyOf(recipes), fetchedAt);
+        });
+        if (updated == previous[0]) {
+            return;
+        }
+        registerImages(recipes);
+        if (previous[0] == null || previous[0].recipes().isEmpty()) {
+            addCategoryPath(categoryPath);
+        }
+        // 取り直しても同じレシピであれば、材料インデックスを作り直さなくてよい
+        if (previous[0] == null || !previous[0].recipes().equals(updated.recipes())) {
+            version.incrementAndGet();
+            if (previous[0] != null) {
+                dropImageUrls(previous[0].recipes());
+            }
+        }
+    }
+
+    private synchronized void addCategoryPath(String categoryPath) {
+        List<String> paths = new ArrayList<>(categoryPaths.size() + 1);
+        paths.addAll(categoryPaths);
+        paths.add(categoryPath);
+        categoryPaths = List.copyOf(paths);
+    }
+
+    /**
+     * 指定されたカテゴリパス以外のデータをプールから取り除きます。
+     * カテゴリ一覧を読み込み直した後に呼び出し、削除されたカテゴリのレシピを返さないようにします。
+     *
+     * @param validPaths 現在のカテゴリ一覧に含まれる完全なカテゴリパス
+     * @return 取り除いたカテゴリ数
+     */
+    public synchronized int retainCategories(Collection<String> validPaths) {
+        Set<String> valid = validPaths instanceof Set<String> set ? set : new HashSet<>(validPaths);
+        int removed = 0;
+        List<Recipe> removedRecipes = new ArrayList<>();
+        for (String categoryPath : entries.keySet()) {
+            if (!valid.contains(categoryPath)) {
+                PoolEntry entry = entries.remove(categoryPath);
+                if (entry != null) {
+                    removedRecipes.addAll(entry.recipes());
+                }
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            categoryPaths = categoryPaths.stream().filter(valid::contains).toList();
+            version.incrementAndGet();
+            dropImageUrls(removedRecipes);
+        }
+        return removed;
+    }
+
+    /**
+     * スナップショットから読み込んだエントリを、取得時刻を保ったまま登録します。
+     * 既により新しいデータがある場合は上書きしません。
+     *
+     * @param categoryPath 完全なカテゴリパス
+     * @param entry 復元するエントリ
+     */
+    public void restore(String categoryPath, PoolEntry entry) {
+        if (entry.recipes().isEmpty()) {
+            return;
+        }
+        PoolEntry current = entries.putIfAbsent(categoryPath, entry);
+        if (current == null) {
+            registerImages(entry.recipes());
+            addCategoryPath(categoryPath);
+            version.incrementAndGet();
+        }
+    }
+
+    // 登録と削除は imageUrls のロックで順に行う。エントリを更新してから登録するため、
+    // 削除側が更新前のエントリを見て画像URLを消しても、その後の登録で元に戻る
+    private void registerImages(List<Recipe> recipes) {
+        synchronized (imageUrls) {
+            for (Recipe recipe : recipes) {
+                if (recipe.recipeId() > 0 && !recipe.foodImageUrl().isEmpty()) {
+                    imageUrls.put(recipe.recipeId(), recipe.foodImageUrl());
+                }
+            }
+        }
+    }
+
+    /**
+     * 指定されたレシピのうち、プール内のどのカテゴリにも残っていないものの画像URLを取り除きます。
+     * 取り直しで入れ替わったレシピや、削除されたカテゴリのレシピの画像URLがたまり続けないようにします。
+     */
+    private void dropImageUrls(List<Recipe> candidates) {
+        if (candidates.isEmpty()) {
+            return;
+        }
+        synchronized (imageUrls) {
+            Set<Long> unused = new HashSet<>(candidates.size() * 2);
+            for (Recipe recipe : candidates) {
+                unused.add(recipe.recipeId());
+            }
+            for (PoolEntry entry : entries.values()) {
+                for (Recipe recipe : entry.recipes()) {
+                    unused.remove(recipe.recipeId());
+                }
+                if (unused.isEmpty()) {
+                    return;
+                }
+            }
+            imageUrls.keySet().removeAll(unused);
+        }
+    }
+
+    /**
+     * @param recipeId レシピID
+     * @return プール内のレシピの元の画像URL、または見つからない場合は null
+     */
+    public String imageUrlOf(long recipeId) {
+        return imageUrls.get(recipeId);
+    }
+
+    /**
+     * @return カテゴリパス → エントリの読み取り専用ビュー（スナップショットの保存用）
+     */
+    public Map<String, PoolEntry> entries() {
+        return Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * @param categoryPath 完全なカテゴリパス
+     * @return 登録済みのデータ、または null
+     */
+    public PoolEntry get(String categoryPath) {
+        return entries.get(categoryPath);
+    }
+
+    /**
+     * プール内のカテゴリからランダムに1件のレシピを選びます。
+     *
+     * @param random 乱数生成器
+     * @return 選ばれたレシピ、またはプールが空の場合（選んだカテゴリがちょうど取り除かれた場合を含む）は null
+     */
+    public PoolPick pickRandom(RandomGenerator random) {
+        List<String> paths = categoryPaths;
+        if (paths.isEmpty()) {
+            return null;
+        }
+        String categoryPath = paths.get(random.nextInt(paths.size()));
+        PoolEntry entry = entries.get(categoryPath);
+        // 一覧を読んだ直後に取り除かれたカテゴリは選ばない
+        return entry != null ? pick(categoryPath, entry, random) : null;
+    }
+
+    /**
+     * エントリからランダムに1件のレシピを選びます。
+     *
+     * @param categoryPath 完全なカテゴリパス
+     * @param entry レシピが1件以上あるエントリ
+     * @param random 乱数生成器
+     * @return 選ばれたレシピ
+     */
+    static PoolPick pick(String categoryPath, PoolEntry entry, RandomGenerator random) {
+        int i = random.nextInt(entry.recipes().size());
+        return new PoolPick(categoryPath, entry.recipes().get(i), entry.payloads().get(i));
+    }
+
+    /**
+     * プール内の異なるカテゴリから、1件ずつランダムにレシピを選びます。
+     *
+     * @param count 選ぶ件数
+     * @param random 乱数生成器
+     * @return 選ばれたレシピ（カテゴリは互いに重複しない）。プール内のカテゴリ数が足りない場合は count 件未満
+     */
+    public List<PoolPick> sampleDistinct(int count, RandomGenerator random) {
+        List<String> paths = categoryPaths;
+        int[] indices = RandomSampling.distinctIndices(paths.size(), count, random);
+        List<PoolPick> picks = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            String categoryPath = paths.get(index);
+            PoolEntry entry = entries.get(categoryPath);
+            if (entry != null) {
+                picks.add(pick(categoryPath, entry, random));
+            }
+        }
+        return picks;
+    }
+
+    /**
+     * プール内のレシピに対する材料インデックスを返します。
+     * プールが更新されていれば、最初に呼び出したスレッドが作り直します（その間、他のスレッドは以前のインデックスを使います）。
+     *
+     * @return 材料インデックス
+     */
+    public IngredientIndex ingredientIndex() {
+        long current = version.get();
+        if (ingredientIndexVersion != current && rebuildLock.tryLock()) {
+            try {
+                current = version.get();
+                if (ingredientIndexVersion != current) {
+                    ingredientIndex = IngredientIndex.build(entries);
+                    ingredientIndexVersion = current;
+                }
+            } finally {
+                rebuildLock.unlock();
+            }
+        }
+        return ingredientIndex;
+    }
+
+    /**
+     * カテゴリがリクエストで選ばれたことを記録します（更新の優先度付けに使用）。
+     *
+     * @param categoryPath 完全なカテゴリパス
+     */
+    public void recordRequest(String categoryPath) {
+        requestFrequency.increment(categoryPath);
+    }
+
+    /**
+     * @param categoryPath 完全なカテゴリパス
+     * @return 最近リクエストで選ばれた回数の推定値（{@link #decayRequestFrequencies()} のたびに半減する）
+     */
+    public int getRequestFrequency(String categoryPath) {
+        return requestFrequency.estimate(categoryPath);
+    }
+
+    /**
+     * リクエストで選ばれた回数をすべて半分にします。古いアクセスの影響を徐々に小さくするため、定期的に呼び出します。
+     */
+    public void decayRequestFrequencies() {
+        requestFrequency.decay();
+    }
+
+    /**
+     * @return レシピが登録されているカテゴリ数
+     */
+    public int categoryCount() {
+        return categoryPaths.size();
+    }
+}
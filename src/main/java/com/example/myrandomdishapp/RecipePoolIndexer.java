@@ -0,0 +1,243 @@
+package com.example.myrandomdishapp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * すべての小カテゴリのランキングを1カテゴリずつ取得し、{@link RecipePool} を埋めるバックグラウンド処理。
+ * 1回の実行でAPIを1回だけ呼び出します。楽天APIの利用制限（1秒1回）は {@link RecipeApiClient} の共有レートリミッタで守られます。
+ *
+ * <p>未取得のカテゴリを最優先し、その後はカテゴリごとの更新間隔に従って、次の更新時刻が最も早いカテゴリから更新します。
+ * 更新間隔は最近のリクエスト頻度に応じて決め、よく選ばれるカテゴリほど頻繁に、ほとんど選ばれないカテゴリはまれに更新します。
+ * 更新の合計回数は、実行間隔から求めた利用枠に収まるように調整します。
+ */
+public class RecipePoolIndexer implements Runnable {
+
+    // 更新間隔の下限・上限（分）。ランキングの更新は多くても1日1回程度のため、人気のカテゴリでもこれより頻繁には取得しない
+    private static final long REFRESH_MIN_MINUTES = EnvConfig.getLong("RECIPE_POOL_REFRESH_MIN_MINUTES", 30);
+    private static final long REFRESH_MAX_MINUTES = EnvConfig.getLong("RECIPE_POOL_REFRESH_MAX_MINUTES", 2880);
+    // 実行枠のうち、定期的な更新に使う割合。残りは未取得カテゴリの取得や計画の誤差に回す
+    private static final double REFRESH_BUDGET_RATIO = EnvConfig.getDouble("RECIPE_POOL_REFRESH_BUDGET_RATIO", 0.8);
+    // リクエスト頻度が半減するまでの時間（分）
+    private static final long FREQUENCY_HALF_LIFE_MINUTES = EnvConfig.getLong("RECIPE_POOL_FREQUENCY_HALF_LIFE_MINUTES", 60);
+    // 取得に失敗したカテゴリを再試行するまでの待ち時間の初期値（秒）。失敗が続くたびに倍にし、そのカテゴリの更新間隔で頭打ちにする
+    private static final long RETRY_MIN_SECONDS = EnvConfig.getLong("RECIPE_POOL_RETRY_MIN_SECONDS", 60);
+    // 更新計画を作り直す間隔（分）
+    private static final long PLAN_INTERVAL_MINUTES = EnvConfig.getLong("RECIPE_POOL_PLAN_INTERVAL_MINUTES", 5);
+    // ほとんど選ばれないカテゴリにも更新枠を割り当てるための、頻度に加える重み
+    private static final double BASE_WEIGHT = 1.0;
+
+    private static final EventLog LOG = EventLog.get();
+
+    /**
+     * 次の更新時刻とカテゴリパスの組。
+     */
+    private record Scheduled(long dueAtMillis, String categoryPath) {
+    }
+
+    /**
+     * 取得に失敗したカテゴリの、連続した失敗回数と次に再試行する時刻の組。
+     */
+    private record Backoff(int failures, long retryAtMillis) {
+    }
+
+    private final RecipeApiClient apiClient;
+    private final RecipePool pool;
+
+    // 対象となる完全なカテゴリパスの一覧。カテゴリのロード後に差し替えられる
+    private volatile List<String> categoryPaths = Collections.emptyList();
+    private volatile boolean planStale = true;
+
+    // 以下は実行スレッドからのみ参照する
+    private final PriorityQueue<Scheduled> queue = new PriorityQueue<>(Comparator.comparingLong(Scheduled::dueAtMillis));
+    private Map<String, Long> refreshIntervals = Map.of();
+    // 取得に失敗したカテゴリの再試行の予定。計画を作り直しても、再試行の間隔は保つ
+    private final Map<String, Backoff> backoffs = new HashMap<>();
+    private long plannedAtMillis;
+    // 1時間あたりに定期更新へ使える回数。start() で実行間隔から求め直す
+    private double refreshesPerHour = REFRESH_BUDGET_RATIO * TimeUnit.HOURS.toMillis(1) / RecipeApiClient.REQUEST_INTERVAL_MS;
+
+    public RecipePoolIndexer(RecipeApiClient apiClient, RecipePool pool) {
+        this.apiClient = apiClient;
+        this.pool = pool;
+    }
+
+    /**
+     * 巡回対象のカテゴリパスを設定します。次回の実行時に更新計画を作り直します。
+     *
+     * @param paths 完全なカテゴリパス（largeID-mediumID-smallID）の一覧
+     */
+    public void updateCategoryPaths(List<String> paths) {
+        List<String> shuffled = new ArrayList<>(paths);
+        Collections.shuffle(shuffled); // 未取得カテゴリの取得順を偏らせない
+        this.categoryPaths = List.copyOf(shuffled);
+        this.planStale = true;
+    }
+
+    /**
+     * 指定されたエグゼキュータ上で定期実行を開始します。リクエスト頻度の減衰も同じエグゼキュータで行います。
+     *
+     * @param executor 実行に使用するエグゼキュータ
+     * @param intervalMillis 実行間隔（ミリ秒）。API呼び出し間隔として使用されます。
+     * @return スケジュールされたタスク
+     */
+    public ScheduledFuture<?> start(ScheduledExecutorService executor, long intervalMillis) {
+        this.refreshesPerHour = REFRESH_BUDGET_RATIO * TimeUnit.HOURS.toMillis(1) / intervalMillis;
+        executor.scheduleWithFixedDelay(pool::decayRequestFrequencies,
+                FREQUENCY_HALF_LIFE_MINUTES, FREQUENCY_HALF_LIFE_MINUTES, TimeUnit.MINUTES);
+        return executor.scheduleWithFixedDelay(this, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void run() {
+        String categoryPath = selectNextCategory();
+        if (categoryPath == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try {
+            RecipeApiClient.Ranking ranking = apiClient.refreshCategoryRanking(categoryPath);
+            pool.put(categoryPath, ranking.recipes(), ranking.fetchedAtMillis());
+        } catch (CircuitOpenException | RateLimitExceededException e) {
+            // APIの障害中や、リクエスト処理で利用枠を使い切っている間は呼び出していないため、更新時刻は進めずに次回以降に回す
+            queue.add(new Scheduled(now, categoryPath));
+            return;
+        } catch (InterruptedException e) {
+            // 終了処理による中断。取得していないため、取得時刻は記録しない
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            // 定期実行を止めないよう、例外はここで握りつぶす。取得済みのレシピと取得時刻はそのまま残し、間隔を空けて再試行する
+            Backoff backoff = backoffAfterFailure(categoryPath, now);
+            LOG.warn("pool.refresh.failed", "msg", "レシピプールの更新に失敗しました", "category", categoryPath,
+                    "failures", backoff.failures(), "retryInSeconds", TimeUnit.MILLISECONDS.toSeconds(backoff.retryAtMillis() - now), "error", e);
+            queue.add(new Scheduled(backoff.retryAtMillis(), categoryPath));
+            return;
+        }
+        backoffs.remove(categoryPath);
+        queue.add(new Scheduled(now + intervalOf(categoryPath), categoryPath));
+    }
+
+    /**
+     * 取得の失敗を記録し、次に再試行する時刻を決めます。
+     * 待ち時間は RETRY_MIN_SECONDS から失敗のたびに倍にし、そのカテゴリの更新間隔を超えないようにします。
+     */
+    private Backoff backoffAfterFailure(String categoryPath, long now) {
+        Backoff previous = backoffs.get(categoryPath);
+        int failures = previous == null ? 1 : previous.failures() + 1;
+        long delay = Math.min(TimeUnit.SECONDS.toMillis(RETRY_MIN_SECONDS) << Math.min(failures - 1, 20), intervalOf(categoryPath));
+        Backoff backoff = new Backoff(failures, now + delay);
+        backoffs.put(categoryPath, backoff);
+        return backoff;
+    }
+
+    /**
+     * 次に取得するカテゴリを選び、更新待ちの列から取り除きます。
+     * 未取得のカテゴリがあればそれを返し、なければ次の更新時刻を過ぎたカテゴリのうち最も早いものを返します。
+     *
+     * @return 取得対象のカテゴリパス、または更新不要の場合は null
+     */
+    String selectNextCategory() {
+        long now = System.currentTimeMillis();
+        if (planStale || now - plannedAtMillis >= TimeUnit.MINUTES.toMillis(PLAN_INTERVAL_MINUTES)) {
+            rebuildPlan(now);
+        }
+        while (!queue.isEmpty() && queue.peek().dueAtMillis() <= now) {
+            Scheduled next = queue.poll();
+            RecipePool.PoolEntry entry = pool.get(next.categoryPath());
+            if (entry != null) {
+                // リクエスト処理など、ほかの経路で取得済みであれば次の更新時刻を計算し直す
+                long due = entry.fetchedAtMillis() + intervalOf(next.categoryPath());
+                if (due > now) {
+                    queue.add(new Scheduled(due, next.categoryPath()));
+                    continue;
+                }
+            }
+            return next.categoryPath();
+        }
+        return null;
+    }
+
+    /**
+     * 現在のリクエスト頻度から各カテゴリの更新間隔を決め、更新待ちの列を作り直します。
+     */
+    private void rebuildPlan(long now) {
+        List<String> paths = categoryPaths;
+        refreshIntervals = planIntervals(paths, pool::getRequestFrequency, refreshesPerHour,
+                TimeUnit.MINUTES.toMillis(REFRESH_MIN_MINUTES), TimeUnit.MINUTES.toMillis(REFRESH_MAX_MINUTES));
+        queue.clear();
+        backoffs.keySet().retainAll(refreshIntervals.keySet());
+        long hottest = Long.MAX_VALUE;
+        double plannedPerHour = 0;
+        for (String path : paths) {
+            RecipePool.PoolEntry entry = pool.get(path);
+            long interval = refreshIntervals.get(path);
+            long due = entry == null ? 0 : entry.fetchedAtMillis() + interval;
+            Backoff backoff = backoffs.get(path);
+            queue.add(new Scheduled(backoff == null ? due : Math.max(due, backoff.retryAtMillis()), path));
+            hottest = Math.min(hottest, interval);
+            plannedPerHour += (double) TimeUnit.HOURS.toMillis(1) / interval;
+        }
+        plannedAtMillis = now;
+        planStale = false;
+        if (!paths.isEmpty()) {
+            LOG.info("pool.refresh.planned", "msg", "レシピプールの更新計画を作成しました", "categories", paths.size(),
+                    "minIntervalMinutes", TimeUnit.MILLISECONDS.toMinutes(hottest),
+                    "refreshesPerHour", Math.round(plannedPerHour), "budgetPerHour", Math.round(refreshesPerHour));
+        }
+    }
+
+    private long intervalOf(String categoryPath) {
+        Long interval = refreshIntervals.get(categoryPath);
+        return interval != null ? interval : TimeUnit.MINUTES.toMillis(REFRESH_MAX_MINUTES);
+    }
+
+    /**
+     * 各カテゴリの更新間隔を決めます。
+     * 1時間あたりの更新回数を「リクエスト頻度 + 基本の重み」に比例して配分し、その逆数を間隔とします。
+     * 間隔は [minIntervalMillis, maxIntervalMillis] に収め、上限で切り詰めたことで合計が利用枠を超える場合は
+     * 全体を同じ割合で延ばします。下限で切り詰めて余った枠は配り直さず、リクエスト処理からのAPI呼び出しに残します。
+     *
+     * @param paths カテゴリパスの一覧
+     * @param frequency カテゴリパス → 最近のリクエスト頻度
+     * @param refreshesPerHour 1時間あたりに使える更新回数
+     * @param minIntervalMillis 更新間隔の下限
+     * @param maxIntervalMillis 更新間隔の上限
+     * @return カテゴリパス → 更新間隔（ミリ秒）
+     */
+    static Map<String, Long> planIntervals(List<String> paths, ToDoubleFunction<String> frequency, double refreshesPerHour,
+                                           long minIntervalMillis, long maxIntervalMillis) {
+        double[] weights = new double[paths.size()];
+        double totalWeight = 0;
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = frequency.applyAsDouble(paths.get(i)) + BASE_WEIGHT;
+            totalWeight += weights[i];
+        }
+
+        long hourMillis = TimeUnit.HOURS.toMillis(1);
+        double[] intervals = new double[weights.length];
+        double plannedPerHour = 0;
+        for (int i = 0; i < weights.length; i++) {
+            double perHour = refreshesPerHour * weights[i] / totalWeight;
+            intervals[i] = Math.min(Math.max(hourMillis / perHour, minIntervalMillis), maxIntervalMillis);
+            plannedPerHour += hourMillis / intervals[i];
+        }
+        // 上限で切り詰めた分だけ利用枠を超えた場合は、全体の間隔を延ばして枠に収める
+        double stretch = plannedPerHour > refreshesPerHour ? plannedPerHour / refreshesPerHour : 1.0;
+
+        Map<String, Long> result = new HashMap<>(paths.size() * 2);
+        for (int i = 0; i < weights.length; i++) {
+            result.put(paths.get(i), (long) Math.ceil(intervals[i] * stretch));
+        }
+        return result;
+    }
+}
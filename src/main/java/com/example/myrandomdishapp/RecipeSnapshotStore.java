@@ -0,0 +1,235 @@
+package com.example.myrandomdishapp;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * カテゴリ構成とレシピプールをバイナリ形式のスナップショットファイルに保存・復元します。
+ * 再起動時にスナップショットを読み込むことで、APIを呼び出す前から献立を返せるようにします。
+ *
+ * <p>ファイル形式（すべてビッグエンディアン）:
+ * <pre>
+ * int    MAGIC ("RDSH")
+ * int    VERSION
+ * long   保存時刻（エポックミリ秒）
+ * int    中カテゴリ数, [int categoryId] × 件数, [int parentCategoryId] × 件数
+ * int    小カテゴリ数, [int categoryId] × 件数, [int parentCategoryId] × 件数
+ * int    プールのカテゴリ数, [str categoryPath, long fetchedAt, int レシピ数, [recipe] × レシピ数] × 件数
+ * </pre>
+ * recipe は「long recipeId, str title, str foodImageUrl, str description, int 材料数, [str] × 材料数, str recipeUrl」、
+ * str は「int バイト長 + UTF-8 バイト列」です。
+ */
+public class RecipeSnapshotStore {
+
+    private static final int MAGIC = 0x52445348; // "RDSH"
+    private static final int VERSION = 3;
+
+    private static final EventLog LOG = EventLog.get();
+
+    /**
+     * スナップショットから復元したデータ。
+     *
+     * @param savedAtMillis 保存時刻
+     * @param categoryIndex カテゴリ索引
+     * @param pool カテゴリパス → プールのエントリ
+     */
+    public record Snapshot(long savedAtMillis,
+                           CategoryIndex categoryIndex,
+                           Map<String, RecipePool.PoolEntry> pool) {
+    }
+
+    private final Path path;
+
+    public RecipeSnapshotStore() {
+        this(Paths.get(EnvConfig.getString("SNAPSHOT_PATH", "data/recipe-snapshot.bin")));
+    }
+
+    public RecipeSnapshotStore(Path path) {
+        this.path = path;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * スナップショットを書き込みます。一時ファイルに書き出してから置き換えるため、途中で失敗しても既存のファイルは壊れません。
+     *
+     * @param categoryIndex カテゴリ索引
+     * @param pool カテゴリパス → プールのエントリ
+     * @throws IOException 書き込みに失敗した場合
+     */
+    public void save(CategoryIndex categoryIndex, Map<String, RecipePool.PoolEntry> pool) throws IOException {
+        Path dir = path.toAbsolutePath().getParent();
+        if (dir != null) {
+            Files.createDirectories(dir);
+        }
+        Path tmp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(System.currentTimeMillis());
+                writeParents(out, categoryIndex.mediumIds(), categoryIndex.mediumParents());
+                writeParents(out, categoryIndex.smallIds(), categoryIndex.smallParents());
+
+                List<Map.Entry<String, RecipePool.PoolEntry>> nonEmpty = new ArrayList<>();
+                for (Map.Entry<String, RecipePool.PoolEntry> e : pool.entrySet()) {
+                    if (!e.getValue().recipes().isEmpty()) {
+                        nonEmpty.add(e);
+                    }
+                }
+                out.writeInt(nonEmpty.size());
+                for (Map.Entry<String, RecipePool.PoolEntry> e : nonEmpty) {
+                    writeString(out, e.getKey());
+                    out.writeLong(e.getValue().fetchedAtMillis());
+                    List<Recipe> recipes = e.getValue().recipes();
+                    out.writeInt(recipes.size());
+                    for (Recipe recipe : recipes) {
+                        writeRecipe(out, recipe);
+                    }
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * スナップショットをメモリマップして読み込みます。
+     *
+     * @return 復元したデータ、またはファイルが存在しない・形式が異なる・壊れている場合は null
+     */
+    public Snapshot load() {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buf.getInt() != MAGIC) {
+                LOG.warn("snapshot.invalid", "msg", "スナップショットの形式が不正です", "path", path.toString());
+                return null;
+            }
+            int version = buf.getInt();
+            if (version != VERSION) {
+                LOG.warn("snapshot.version_mismatch", "msg", "スナップショットのバージョンが異なるため読み込みません",
+                        "version", version, "expected", VERSION);
+                return null;
+            }
+            long savedAt = buf.getLong();
+            CategoryIndex categoryIndex = CategoryIndex.build(readParents(buf), readParents(buf));
+
+            int poolSize = buf.getInt();
+            // 1カテゴリあたり、カテゴリパスの長さ・取得時刻・レシピ数の16バイト以上を使う
+            if (poolSize < 0 || poolSize > buf.remaining() / 16) {
+                throw new IllegalArgumentException("カテゴリ数が不正です: " + poolSize);
+            }
+            Map<String, RecipePool.PoolEntry> pool = new LinkedHashMap<>(poolSize * 2);
+            for (int i = 0; i < poolSize; i++) {
+                String categoryPath = readString(buf);
+                long fetchedAt = buf.getLong();
+                int recipeCount = buf.getInt();
+                // 1件あたり、レシピIDと5つの長さ（文字列4つと材料数）の28バイト以上を使う
+                if (recipeCount < 0 || recipeCount > buf.remaining() / 28) {
+                    throw new IllegalArgumentException("レシピ数が不正です: " + recipeCount);
+                }
+                List<Recipe> recipes = new ArrayList<>(recipeCount);
+                for (int j = 0; j < recipeCount; j++) {
+                    recipes.add(readRecipe(buf));
+                }
+                pool.put(categoryPath, new RecipePool.PoolEntry(List.copyOf(recipes), fetchedAt));
+            }
+            return new Snapshot(savedAt, categoryIndex, pool);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            LOG.warn("snapshot.load_failed", "msg", "スナップショットの読み込みに失敗しました", "path", path.toString(), "error", e);
+            return null;
+        }
+    }
+
+    private static void writeParents(DataOutputStream out, int[] ids, int[] parents) throws IOException {
+        out.writeInt(ids.length);
+        for (int id : ids) {
+            out.writeInt(id);
+        }
+        for (int parent : parents) {
+            out.writeInt(parent);
+        }
+    }
+
+    private static CategoryIndex.IdPairs readParents(ByteBuffer buf) {
+        int count = buf.getInt();
+        if (count < 0 || count > buf.remaining() / 8) {
+            throw new IllegalArgumentException("カテゴリ数が不正です: " + count);
+        }
+        // ID の列と親IDの列を、マップしたバッファからまとめて読み取る
+        int[] ids = new int[count];
+        int[] parents = new int[count];
+        buf.asIntBuffer().get(ids).get(parents);
+        buf.position(buf.position() + count * 8);
+        CategoryIndex.IdPairs pairs = new CategoryIndex.IdPairs();
+        for (int i = 0; i < count; i++) {
+            pairs.add(ids[i], parents[i]);
+        }
+        return pairs;
+    }
+
+    private static void writeRecipe(DataOutputStream out, Recipe recipe) throws IOException {
+        out.writeLong(recipe.recipeId());
+        writeString(out, recipe.title());
+        writeString(out, recipe.foodImageUrl());
+        writeString(out, recipe.description());
+        out.writeInt(recipe.materials().size());
+        for (String material : recipe.materials()) {
+            writeString(out, material);
+        }
+        writeString(out, recipe.recipeUrl());
+    }
+
+    private static Recipe readRecipe(ByteBuffer buf) {
+        long recipeId = buf.getLong();
+        String title = readString(buf);
+        String foodImageUrl = readString(buf);
+        String description = readString(buf);
+        int materialCount = buf.getInt();
+        if (materialCount < 0 || materialCount > buf.remaining()) {
+            throw new IllegalArgumentException("材料数が不正です: " + materialCount);
+        }
+        List<String> materials = new ArrayList<>(materialCount);
+        for (int i = 0; i < materialCount; i++) {
+            materials.add(readString(buf));
+        }
+        return new Recipe(recipeId, title, foodImageUrl, description, materials, readString(buf));
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int length = buf.getInt();
+        if (length < 0 || length > buf.remaining()) {
+            throw new IllegalArgumentException("文字列長が不正です: " + length);
+        }
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.myrandomdishapp;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ロックを使わないトークンバケット方式のレートリミッタ。
+ * 「次のトークンが利用可能になる理論上の時刻」を1つの AtomicLong で管理し（GCRA）、
+ * CAS で予約してから必要な時間だけ待機します。
+ */
+public class TokenBucketRateLimiter {
+
+    private final long intervalNanos;
+    private final long burstToleranceNanos;
+
+    // 次のリクエストが本来許可される時刻（System.nanoTime 基準）
+    private final AtomicLong theoreticalArrival;
+
+    /**
+     * @param interval トークン1個が補充される間隔
+     * @param unit interval の単位
+     * @param burst バケットの容量（連続して即時に許可できる回数）
+     */
+    public TokenBucketRateLimiter(long interval, TimeUnit unit, int burst) {
+        if (interval <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("interval と burst は1以上を指定してください: " + interval + ", " + burst);
+        }
+        this.intervalNanos = unit.toNanos(interval);
+        this.burstToleranceNanos = intervalNanos * (burst - 1);
+        this.theoreticalArrival = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * トークンを1個取得します。すぐに取得できない場合は、最大 maxWait まで待機します。
+     *
+     * @param maxWait 最大待機時間
+     * @param unit maxWait の単位
+     * @return 取得できた場合は true、待機時間の上限を超える場合は（待機せずに）false
+     * @throws InterruptedException 待機中に割り込まれた場合
+     */
+    public boolean tryAcquire(long maxWait, TimeUnit unit) throws InterruptedException {
+        long waitNanos = tryReserve(maxWait, unit);
+        if (waitNanos < 0) {
+            return false;
+        }
+        sleepNanos(waitNanos);
+        return true;
+    }
+
+    /**
+     * 待機せずにトークンを1個予約します。呼び出し側は返された時間だけ経過してから処理を行ってください。
+     * スレッドをブロックしたくない非同期処理から使用します。
+     *
+     * @param maxWait 許容する最大待機時間
+     * @param unit maxWait の単位
+     * @return 予約したトークンが使えるようになるまでの時間（ナノ秒、0 以上）。上限を超える場合は予約せずに -1
+     */
+    public long tryReserve(long maxWait, TimeUnit unit) {
+        long maxWaitNanos = unit.toNanos(maxWait);
+        while (true) {
+            long now = System.nanoTime();
+            long tat = theoreticalArrival.get();
+            long start = Math.max(tat, now);
+            long waitNanos = start - burstToleranceNanos - now;
+            if (waitNanos > maxWaitNanos) {
+                return -1;
+            }
+            if (theoreticalArrival.compareAndSet(tat, start + intervalNanos)) {
+                return Math.max(waitNanos, 0);
+            }
+        }
+    }
+
+    private static void sleepNanos(long nanos) throws InterruptedException {
+        long deadline = System.nanoTime() + nanos;
+        long remaining = nanos;
+        while (remaining > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            remaining = deadline - System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.myrandomdishapp;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 有効期限（TTL）付き・件数上限付きのLRUキャッシュ。
+ * 上限を超えた場合は最も長くアクセスされていないエントリから破棄します。
+ * 猶予期間（staleTtl）を指定すると、期限切れのエントリもその間は {@link #getStale(Object)} で取り出せます。
+ *
+ * @param <K> キーの型
+ * @param <V> 値の型
+ */
+public class TtlLruCache<K, V> {
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final long staleTtlNanos;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    // accessOrder=true でアクセス順に並べ、先頭が最も古いエントリになる
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    private record Entry<V>(V value, long expiresAtNanos) {
+    }
+
+    /**
+     * @param maxEntries 保持する最大件数
+     * @param ttl エントリの有効期間
+     * @param unit ttl の単位
+     */
+    public TtlLruCache(int maxEntries, long ttl, TimeUnit unit) {
+        this(maxEntries, ttl, 0, unit);
+    }
+
+    /**
+     * @param maxEntries 保持する最大件数
+     * @param ttl エントリの有効期間
+     * @param staleTtl 有効期限が切れた後もエントリを保持しておく猶予期間
+     * @param unit ttl と staleTtl の単位
+     */
+    public TtlLruCache(int maxEntries, long ttl, long staleTtl, TimeUnit unit) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries は1以上を指定してください: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.staleTtlNanos = unit.toNanos(staleTtl);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > TtlLruCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 有効期限内の値を取得します。
+     *
+     * @param key キー
+     * @return キャッシュされた値、または null（未登録・期限切れの場合）
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        long now = System.nanoTime();
+        if (now - entry.expiresAtNanos() >= 0) {
+            // 猶予期間内であれば getStale() のために残しておく
+            if (now - entry.expiresAtNanos() >= staleTtlNanos) {
+                entries.remove(key);
+                evictions.incrementAndGet();
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.value();
+    }
+
+    /**
+     * 有効期限が切れていても猶予期間内であれば値を取得します。ヒット数・ミス数には数えません。
+     *
+     * @param key キー
+     * @return キャッシュされた値、または null（未登録・猶予期間も過ぎている場合）
+     */
+    public synchronized V getStale(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null || System.nanoTime() - entry.expiresAtNanos() >= staleTtlNanos) {
+            return null;
+        }
+        return entry.value();
+    }
+
+    /**
+     * 値を登録します。既存のエントリは上書きされ、有効期限も更新されます。
+     *
+     * @param key キー
+     * @param value 値（null は登録しません）
+     */
+    public synchronized void put(K key, V value) {
+        if (value == null) {
+            return;
+        }
+        entries.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+}
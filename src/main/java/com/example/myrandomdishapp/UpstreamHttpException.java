@@ -0,0 +1,20 @@
+package com.example.myrandomdishapp;
+
+/**
+ * APIが200以外のHTTPステータスを返したことを表す例外。
+ */
+public class UpstreamHttpException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+
+    public UpstreamHttpException(int statusCode, String responseBody) {
+        super("APIリクエスト失敗: HTTP error code : " + statusCode + ", Response: " + responseBody);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
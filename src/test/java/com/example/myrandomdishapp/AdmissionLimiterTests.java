@@ -0,0 +1,81 @@
+package com.example.myrandomdishapp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class AdmissionLimiterTests {
+
+	@Test
+	void queuesUpToLimitAndRejectsWhenQueueIsFull() {
+		AdmissionLimiter limiter = new AdmissionLimiter(1, 1, 1, 1, 1, 10, TimeUnit.SECONDS);
+
+		AdmissionLimiter.Permit first = limiter.acquire().join();
+		CompletableFuture<AdmissionLimiter.Permit> queued = limiter.acquire();
+		CompletableFuture<AdmissionLimiter.Permit> rejected = limiter.acquire();
+
+		assertThat(queued).isNotDone();
+		assertThat(limiter.tryAcquire()).isNull();
+		assertThatThrownBy(rejected::join).hasCauseInstanceOf(AdmissionRejectedException.class);
+
+		first.release(true);
+		assertThat(queued).isCompleted();
+		assertThat(limiter.getInFlight()).isEqualTo(1);
+		assertThat(limiter.getQueued()).isZero();
+
+		first.release(true); // 2回目の返却は無視される
+		assertThat(limiter.getInFlight()).isEqualTo(1);
+	}
+
+	@Test
+	void rejectsQueuedRequestAfterTimeout() {
+		AdmissionLimiter limiter = new AdmissionLimiter(1, 1, 1, 1, 5, 30, TimeUnit.MILLISECONDS);
+		AdmissionLimiter.Permit first = limiter.acquire().join();
+
+		CompletableFuture<AdmissionLimiter.Permit> queued = limiter.acquire();
+
+		assertThatThrownBy(queued::join).hasCauseInstanceOf(AdmissionRejectedException.class);
+		assertThat(limiter.getQueued()).isZero();
+		first.release(true);
+		assertThat(limiter.getInFlight()).isZero();
+	}
+
+	@Test
+	void adjustsLimitByLatencyAndFailures() {
+		AdmissionLimiter limiter = new AdmissionLimiter(2, 1, 4, 10, 0, 0, TimeUnit.SECONDS);
+
+		// 上限まで使い切った状態で目標時間内に終われば上限が増える
+		for (int i = 0; i < 4; i++) {
+			AdmissionLimiter.Permit a = limiter.tryAcquire();
+			AdmissionLimiter.Permit b = limiter.tryAcquire();
+			a.release(true);
+			b.release(true);
+		}
+		assertThat(limiter.getLimit()).isEqualTo(3);
+
+		// 失敗が続くと下限まで下がる
+		for (int i = 0; i < 20; i++) {
+			limiter.tryAcquire().release(false);
+		}
+		assertThat(limiter.getLimit()).isEqualTo(1);
+		assertThat(limiter.tryAcquire()).isNotNull();
+		assertThat(limiter.tryAcquire()).isNull();
+	}
+
+	@Test
+	void discardReturnsPermitWithoutAdjustingLimit() {
+		AdmissionLimiter limiter = new AdmissionLimiter(3, 1, 4, 10, 0, 0, TimeUnit.SECONDS);
+
+		for (int i = 0; i < 20; i++) {
+			limiter.tryAcquire().discard();
+		}
+
+		assertThat(limiter.getLimit()).isEqualTo(3);
+		assertThat(limiter.getInFlight()).isZero();
+	}
+
+}
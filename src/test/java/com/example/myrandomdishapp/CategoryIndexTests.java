@@ -0,0 +1,32 @@
+package com.example.myrandomdishapp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class CategoryIndexTests {
+
+	@Test
+	void precomputesFullPathsAndSkipsOrphanSmallCategories() {
+		CategoryIndex.IdPairs medium = new CategoryIndex.IdPairs();
+		medium.add(291, 11);
+		medium.add(290, 10);
+		CategoryIndex.IdPairs small = new CategoryIndex.IdPairs();
+		small.add(952, 291);
+		small.add(950, 290);
+		small.add(999, 404);
+
+		CategoryIndex index = CategoryIndex.build(medium, small);
+
+		assertThat(index.smallCount()).isEqualTo(3);
+		assertThat(index.size()).isEqualTo(2);
+		assertThat(index.allPaths()).containsExactly("10-290-950", "11-291-952");
+		assertThat(index.fullPathOf(952)).isEqualTo("11-291-952");
+		assertThat(index.fullPathOf(999)).isNull();
+		assertThat(index.fullPathOf(1)).isNull();
+		assertThat(index.randomPath(new Random(1))).isIn("10-290-950", "11-291-952");
+	}
+
+}
@@ -0,0 +1,46 @@
+package com.example.myrandomdishapp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakerTests {
+
+	@Test
+	void opensAfterConsecutiveFailuresAndClosesAfterSuccessfulTrial() throws InterruptedException {
+		CircuitBreaker breaker = new CircuitBreaker("test", 2, 50, TimeUnit.MILLISECONDS);
+
+		assertThat(breaker.tryAcquirePermission()).isTrue();
+		breaker.recordFailure();
+		assertThat(breaker.tryAcquirePermission()).isTrue();
+		breaker.recordFailure();
+		assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+		assertThat(breaker.tryAcquirePermission()).isFalse();
+
+		Thread.sleep(60);
+		assertThat(breaker.tryAcquirePermission()).isTrue();
+		assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+		assertThat(breaker.tryAcquirePermission()).isFalse();
+
+		breaker.recordSuccess();
+		assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+		assertThat(breaker.tryAcquirePermission()).isTrue();
+	}
+
+	@Test
+	void failedTrialReopensCircuit() throws InterruptedException {
+		CircuitBreaker breaker = new CircuitBreaker("test", 1, 50, TimeUnit.MILLISECONDS);
+		breaker.tryAcquirePermission();
+		breaker.recordFailure();
+
+		Thread.sleep(60);
+		assertThat(breaker.tryAcquirePermission()).isTrue();
+		breaker.recordFailure();
+
+		assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+		assertThat(breaker.tryAcquirePermission()).isFalse();
+	}
+
+}
@@ -0,0 +1,280 @@
+package com.example.myrandomdishapp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class DishControllerTests {
+
+	private static final long DEADLINE_MS = 200;
+
+	@TempDir
+	Path tempDir;
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final RecipePool pool = new RecipePool();
+	private DishController controller;
+
+	@AfterEach
+	void shutdown() {
+		if (controller != null) {
+			controller.shutdown();
+		}
+	}
+
+	@Test
+	void returnsFetchedDishWithinDeadline() throws IOException {
+		StubApiClient client = new StubApiClient(path -> CompletableFuture.completedFuture(
+				new RecipeApiClient.Ranking(List.of(recipe(1, "親子丼")), 1_000)));
+		start(client, 1);
+
+		ResponseEntity<byte[]> response = controller.generateDishApi(null, null).join();
+
+		assertThat(response.getStatusCode().value()).isEqualTo(200);
+		assertThat(body(response)).contains("親子丼");
+		assertThat(client.requested).containsExactly("10-1-100");
+		assertThat(pool.get("10-1-100").fetchedAtMillis()).isEqualTo(1_000);
+		assertThat(responseCount("api")).isEqualTo(1);
+	}
+
+	@Test
+	void fallsBackToPoolWhenUpstreamMissesDeadline() throws IOException {
+		pool.put("10-1-101", List.of(recipe(2, "肉じゃが")), 1_000);
+		start(new StubApiClient(path -> new CompletableFuture<>()), 2);
+
+		for (int i = 0; i < 5; i++) {
+			ResponseEntity<byte[]> response = controller.generateDishApi(null, null).join();
+
+			assertThat(response.getStatusCode().value()).isEqualTo(200);
+			assertThat(body(response)).contains("肉じゃが");
+		}
+		// 応答の記録は、実際に返した応答について1リクエストにつき1回だけ行う
+		assertThat(responseCount("fallback")).isEqualTo(5);
+		assertThat(totalResponses()).isEqualTo(5);
+	}
+
+	@Test
+	void returnsGatewayTimeoutWhenPoolIsEmpty() throws IOException {
+		start(new StubApiClient(path -> new CompletableFuture<>()), 1);
+
+		long start = System.nanoTime();
+		ResponseEntity<byte[]> response = controller.generateDishApi(null, null).join();
+
+		assertThat(response.getStatusCode().value()).isEqualTo(504);
+		assertThat(response.getHeaders().getETag()).isNull();
+		assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+		assertThat(responseCount("none")).isEqualTo(1);
+	}
+
+	@Test
+	void poolsResultArrivingAfterDeadline() throws IOException {
+		CompletableFuture<RecipeApiClient.Ranking> late = new CompletableFuture<>();
+		start(new StubApiClient(path -> late), 1);
+
+		ResponseEntity<byte[]> response = controller.generateDishApi(null, null).join();
+		assertThat(response.getStatusCode().value()).isEqualTo(504);
+
+		// 期限後に届いた結果は応答には使わないが、次のリクエストのためにプールに蓄える
+		late.complete(new RecipeApiClient.Ranking(List.of(recipe(3, "カレー")), 2_000));
+		assertThat(pool.get("10-1-100").recipes()).extracting(Recipe::title).containsExactly("カレー");
+		assertThat(pool.get("10-1-100").fetchedAtMillis()).isEqualTo(2_000);
+		assertThat(totalResponses()).isEqualTo(1);
+	}
+
+	@Test
+	void generateDishesRejectsCountOutOfRange() throws IOException {
+		pool.put("10-1-100", List.of(recipe(1, "親子丼")), 1_000);
+		start(new StubApiClient(path -> new CompletableFuture<>()), 1);
+
+		assertThat(controller.generateDishesApi(0).getStatusCode().value()).isEqualTo(400);
+		assertThat(controller.generateDishesApi(22).getStatusCode().value()).isEqualTo(400);
+	}
+
+	@Test
+	void generateDishesReturnsNotFoundWhenPoolIsEmpty() throws IOException {
+		StubApiClient client = new StubApiClient(DishControllerTests::rankingOf);
+		start(client, 8);
+
+		ResponseEntity<StreamingResponseBody> response = controller.generateDishesApi(7);
+
+		assertThat(response.getStatusCode().value()).isEqualTo(404);
+		assertThat(dishes(response)).isEmpty();
+		assertThat(client.requested).isEmpty();
+	}
+
+	@Test
+	void generateDishesReturnsDishesFromDistinctCategories() throws IOException {
+		for (int i = 0; i < 8; i++) {
+			pool.put("10-1-" + (100 + i), List.of(recipe(i, "料理" + i)), 1_000);
+		}
+		StubApiClient client = new StubApiClient(DishControllerTests::rankingOf);
+		start(client, 8);
+
+		ResponseEntity<StreamingResponseBody> response = controller.generateDishesApi(7);
+
+		assertThat(response.getStatusCode().value()).isEqualTo(200);
+		List<String> dishes = dishes(response);
+		assertThat(dishes).hasSize(7).doesNotHaveDuplicates();
+		// プールだけで足りる場合はAPIを呼び出さない
+		assertThat(client.requested).isEmpty();
+	}
+
+	@Test
+	void generateDishesFillsShortfallFromUnusedCategories() throws IOException {
+		for (int i = 0; i < 3; i++) {
+			pool.put("10-1-" + (100 + i), List.of(recipe(i, "料理" + i)), 1_000);
+		}
+		StubApiClient client = new StubApiClient(DishControllerTests::rankingOf);
+		start(client, 8);
+
+		List<String> dishes = dishes(controller.generateDishesApi(5));
+
+		assertThat(dishes).hasSize(5).doesNotHaveDuplicates();
+		// 足りない分は、プールから選んだものと重ならないカテゴリから取得する
+		assertThat(client.requested).hasSize(2).doesNotContain("10-1-100", "10-1-101", "10-1-102");
+	}
+
+	@Test
+	void filtersDishesByIngredients() throws IOException {
+		pool.put("10-1-100", List.of(new Recipe(1, "親子丼", "", "", List.of("鶏もも肉", "卵"), "")), 1_000);
+		pool.put("10-1-101", List.of(new Recipe(2, "肉じゃが", "", "", List.of("牛肉", "じゃがいも"), "")), 1_000);
+		StubApiClient client = new StubApiClient(path -> new CompletableFuture<>());
+		start(client, 2);
+
+		for (int i = 0; i < 10; i++) {
+			ResponseEntity<byte[]> response = controller.generateDishApi(List.of("肉"), List.of("卵")).join();
+			assertThat(response.getStatusCode().value()).isEqualTo(200);
+			assertThat(body(response)).contains("肉じゃが");
+		}
+		// 条件付きのリクエストはプールからのみ選び、APIは呼び出さない
+		assertThat(client.requested).isEmpty();
+	}
+
+	@Test
+	void returnsNotFoundWhenNoDishMatchesIngredients() throws IOException {
+		pool.put("10-1-100", List.of(new Recipe(1, "親子丼", "", "", List.of("鶏もも肉", "卵"), "")), 1_000);
+		start(new StubApiClient(path -> new CompletableFuture<>()), 1);
+
+		ResponseEntity<byte[]> response = controller.generateDishApi(List.of("鶏"), List.of("卵")).join();
+
+		assertThat(response.getStatusCode().value()).isEqualTo(404);
+		assertThat(responseCount("none")).isEqualTo(1);
+	}
+
+	@Test
+	void rejectsTooManyIngredientTerms() throws IOException {
+		pool.put("10-1-100", List.of(new Recipe(1, "親子丼", "", "", List.of("鶏もも肉", "卵"), "")), 1_000);
+		start(new StubApiClient(path -> new CompletableFuture<>()), 1);
+
+		// 空の語は数えない
+		assertThat(controller.generateDishApi(List.of("鶏", "", " "), List.of("a", "b", "c", "d", "e", "f", "g")).join()
+				.getStatusCode().value()).isEqualTo(200);
+		assertThat(controller.generateDishApi(List.of("鶏", "卵"), List.of("a", "b", "c", "d", "e", "f", "g")).join()
+				.getStatusCode().value()).isEqualTo(400);
+	}
+
+	/**
+	 * 小カテゴリを smallCount 件持つカテゴリ索引をスナップショットから復元した状態で、コントローラを作成します。
+	 * 小カテゴリのパスは 10-1-100、10-1-101、… になります。
+	 */
+	private void start(StubApiClient client, int smallCount) throws IOException {
+		CategoryIndex.IdPairs medium = new CategoryIndex.IdPairs();
+		medium.add(1, 10);
+		CategoryIndex.IdPairs small = new CategoryIndex.IdPairs();
+		for (int i = 0; i < smallCount; i++) {
+			small.add(100 + i, 1);
+		}
+		RecipeSnapshotStore store = new RecipeSnapshotStore(tempDir.resolve("snapshot.bin"));
+		store.save(CategoryIndex.build(medium, small), Map.of());
+		controller = new DishController(new DishMetrics(registry), client, pool, store, null, DEADLINE_MS);
+	}
+
+	private static Recipe recipe(long id, String title) {
+		return new Recipe(id, title, "https://example.com/" + id + ".jpg", "", List.of("卵"), "");
+	}
+
+	private static CompletableFuture<RecipeApiClient.Ranking> rankingOf(String path) {
+		long id = Long.parseLong(path.substring(path.lastIndexOf('-') + 1));
+		return CompletableFuture.completedFuture(new RecipeApiClient.Ranking(List.of(recipe(id, "料理" + path)), 1_000));
+	}
+
+	private static List<String> dishes(ResponseEntity<StreamingResponseBody> response) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		response.getBody().writeTo(out);
+		List<String> names = new ArrayList<>();
+		new ObjectMapper().readTree(out.toByteArray()).path("dishes").forEach(dish -> names.add(dish.path("dishName").asText()));
+		return names;
+	}
+
+	private static String body(ResponseEntity<byte[]> response) {
+		return new String(response.getBody(), StandardCharsets.UTF_8);
+	}
+
+	private double responseCount(String source) {
+		Counter counter = registry.find("dish.responses").tag("endpoint", "generateDish").tag("source", source).counter();
+		return counter == null ? 0 : counter.count();
+	}
+
+	private double totalResponses() {
+		return registry.find("dish.responses").tag("endpoint", "generateDish").counters().stream().mapToDouble(Counter::count).sum();
+	}
+
+	/**
+	 * ランキングの取得を、テストで指定した処理に置き換えるクライアント。カテゴリのロードと定期更新ではAPIを呼び出しません。
+	 */
+	private static class StubApiClient extends RecipeApiClient {
+
+		private final Function<String, CompletableFuture<Ranking>> rankings;
+		final List<String> requested = new CopyOnWriteArrayList<>();
+
+		StubApiClient(Function<String, CompletableFuture<Ranking>> rankings) {
+			super("test", "http://127.0.0.1:1/CategoryRanking", "http://127.0.0.1:1/CategoryList",
+					new RecipeHttpTransport(Duration.ofSeconds(1), Duration.ofSeconds(1)), new DishMetrics(new SimpleMeterRegistry()));
+			this.rankings = rankings;
+		}
+
+		@Override
+		public CompletableFuture<Ranking> getDishAndImageAndDetailsFromCategoryRankingAsync(String categoryId) {
+			requested.add(categoryId);
+			return rankings.apply(categoryId);
+		}
+
+		@Override
+		public CompletableFuture<Ranking> refreshCategoryRankingAsync(String categoryId) {
+			requested.add(categoryId);
+			return rankings.apply(categoryId);
+		}
+
+		@Override
+		public Ranking refreshCategoryRanking(String categoryId) {
+			throw new CircuitOpenException("テストでは定期更新を行いません");
+		}
+
+		@Override
+		public void loadAllCategories() {
+			// スナップショットから復元したカテゴリをそのまま使う
+		}
+	}
+
+}
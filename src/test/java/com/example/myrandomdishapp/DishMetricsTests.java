@@ -0,0 +1,60 @@
+package com.example.myrandomdishapp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class DishMetricsTests {
+
+	@Test
+	void tagsUpstreamCallsByApiAndOutcome() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		DishMetrics metrics = new DishMetrics(registry);
+
+		metrics.recordUpstreamCall(DishMetrics.API_RANKING, null, 1_000_000);
+		metrics.recordUpstreamCall(DishMetrics.API_RANKING, new UpstreamHttpException(503, ""), 1_000_000);
+		metrics.recordUpstreamCall(DishMetrics.API_CATEGORY_LIST, new HttpTimeoutException("timeout"), 1_000_000);
+
+		assertThat(registry.get("rakuten.api.requests").tag("api", "ranking").tag("outcome", "success").timer().count()).isEqualTo(1);
+		assertThat(registry.get("rakuten.api.requests").tag("api", "ranking").tag("outcome", "server_error").timer().count()).isEqualTo(1);
+		assertThat(registry.get("rakuten.api.requests").tag("api", "category_list").tag("outcome", "timeout").timer().count()).isEqualTo(1);
+	}
+
+	@Test
+	void exposesCacheStatistics() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		DishMetrics metrics = new DishMetrics(registry);
+		TtlLruCache<String, String> cache = new TtlLruCache<>(10, 1, TimeUnit.HOURS);
+		metrics.registerCache("test", cache);
+
+		cache.put("a", "A");
+		cache.get("a");
+		cache.get("b");
+		metrics.recordResponse("generateDish", 200, "pool");
+
+		assertThat(registry.get("dish.cache.size").tag("cache", "test").gauge().value()).isEqualTo(1);
+		assertThat(registry.get("dish.cache.requests").tag("result", "hit").functionCounter().count()).isEqualTo(1);
+		assertThat(registry.get("dish.cache.requests").tag("result", "miss").functionCounter().count()).isEqualTo(1);
+		assertThat(registry.get("dish.responses").tag("status", "200").tag("source", "pool").counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void reusesRegisteredMetersForRepeatedTags() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		DishMetrics metrics = new DishMetrics(registry);
+
+		metrics.recordResponse("generateDish", 200, "api");
+		int meters = registry.getMeters().size();
+		metrics.recordResponse("generateDish", 200, "api");
+		metrics.recordResponse("generateDish", 200, "api");
+
+		assertThat(registry.getMeters()).hasSize(meters);
+		assertThat(registry.get("dish.responses").tag("source", "api").counter().count()).isEqualTo(3);
+	}
+
+}
@@ -0,0 +1,38 @@
+package com.example.myrandomdishapp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class DishPayloadTests {
+
+	private static final Recipe RECIPE = new Recipe(1L, "親子丼", "https://example.com/1.jpg", "\"簡単\"な丼",
+			List.of("鶏肉", "卵"), "https://example.com/recipe/1");
+
+	@Test
+	void rendersDishJson() {
+		String json = new String(DishPayload.of(RECIPE).json(), StandardCharsets.UTF_8);
+
+		assertThat(json).isEqualTo("{\"dishName\":\"親子丼\",\"dishImageUrl\":\"/img/1\","
+				+ "\"recipeDescription\":\"\\\"簡単\\\"な丼\",\"recipeMaterial\":\"鶏肉、卵\","
+				+ "\"recipeUrl\":\"https://example.com/recipe/1\"}");
+	}
+
+	@Test
+	void etagIsStableAndDependsOnContent() {
+		DishPayload first = DishPayload.of(RECIPE);
+		DishPayload second = DishPayload.of(RECIPE);
+		DishPayload other = DishPayload.message("もう一度！");
+
+		assertThat(first.etag()).startsWith("\"").endsWith("\"").hasSize(24);
+		assertThat(second.etag()).isEqualTo(first.etag());
+		assertThat(second).isEqualTo(first);
+		assertThat(other.etag()).isNotEqualTo(first.etag());
+		// ETag を付けないメッセージ用のボディも同じ内容になる
+		assertThat(DishPayload.messageJson("もう一度！")).isEqualTo(other.json());
+	}
+
+}
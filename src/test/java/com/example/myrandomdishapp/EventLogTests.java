@@ -0,0 +1,50 @@
+package com.example.myrandomdishapp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class EventLogTests {
+
+	@Test
+	void writesJsonLinesWithAppIdRedacted() throws InterruptedException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		EventLog log = new EventLog(16, 1.0, 5, "1234567890123456789", new PrintStream(out, true, StandardCharsets.UTF_8), System.err);
+
+		log.info("api.request", "url", "http://example.com/?applicationId=1234567890123456789&categoryId=10", "count", 3);
+		log.info("api.error", "msg", "id 1234567890123456789 was rejected");
+
+		String written = awaitLines(out, 2);
+		assertThat(written).doesNotContain("1234567890123456789");
+		assertThat(written).contains("\"event\":\"api.request\"", "applicationId=***&categoryId=10", "\"count\":3", "id *** was rejected");
+	}
+
+	@Test
+	void limitsWarningsPerEventName() throws InterruptedException {
+		ByteArrayOutputStream err = new ByteArrayOutputStream();
+		EventLog log = new EventLog(64, 0.0, 2, null, System.out, new PrintStream(err, true, StandardCharsets.UTF_8));
+
+		for (int i = 0; i < 10; i++) {
+			log.warn("api.failed", "attempt", i);
+		}
+		log.warn("other.failed");
+
+		String written = awaitLines(err, 3);
+		Thread.sleep(50);
+		assertThat(err.toString(StandardCharsets.UTF_8).lines()).hasSize(3);
+		assertThat(written).contains("\"attempt\":0", "\"attempt\":1", "other.failed");
+		assertThat(log.sampled()).isFalse();
+	}
+
+	private static String awaitLines(ByteArrayOutputStream out, int lines) throws InterruptedException {
+		for (int i = 0; i < 200 && out.toString(StandardCharsets.UTF_8).lines().count() < lines; i++) {
+			Thread.sleep(10);
+		}
+		return out.toString(StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,26 @@
+package com.example.myrandomdishapp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class FrequencySketchTests {
+
+	@Test
+	void estimatesCountsAndDecaysByHalf() {
+		FrequencySketch sketch = new FrequencySketch(256);
+		for (int i = 0; i < 40; i++) {
+			sketch.increment("10-275-516");
+		}
+		for (int i = 0; i < 100; i++) {
+			sketch.increment("cold-" + i);
+		}
+
+		assertThat(sketch.estimate("10-275-516")).isGreaterThanOrEqualTo(40).isLessThan(45);
+		assertThat(sketch.estimate("never-seen")).isLessThan(5);
+
+		sketch.decay();
+		assertThat(sketch.estimate("10-275-516")).isGreaterThanOrEqualTo(20).isLessThan(23);
+	}
+
+}
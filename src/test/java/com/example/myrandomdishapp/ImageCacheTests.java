@@ -0,0 +1,83 @@
+package com.example.myrandomdishapp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpServer;
+
+class ImageCacheTests {
+
+	@TempDir
+	Path dir;
+
+	private HttpServer server;
+	private String baseUrl;
+
+	@BeforeEach
+	void startServer() throws IOException {
+		BufferedImage image = new BufferedImage(1000, 500, BufferedImage.TYPE_INT_RGB);
+		ByteArrayOutputStream png = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", png);
+		byte[] body = png.toByteArray();
+
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", exchange -> {
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.start();
+		baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+	}
+
+	@AfterEach
+	void stopServer() {
+		server.stop(0);
+	}
+
+	@Test
+	void storesResizedJpegAndEvictsLeastRecentlyUsed() throws IOException, InterruptedException {
+		ImageCache cache = new ImageCache(dir, Long.MAX_VALUE, 100, new RecipeHttpTransport(Duration.ofSeconds(2), Duration.ofSeconds(2)));
+
+		Path first = cache.fetch(1, baseUrl + "1.png").join();
+		BufferedImage thumbnail = ImageIO.read(first.toFile());
+		assertThat(thumbnail.getWidth()).isEqualTo(100);
+		assertThat(thumbnail.getHeight()).isEqualTo(50);
+		assertThat(cache.cached(1)).isEqualTo(first);
+
+		// 2件分だけ保存できる上限で、最も長く参照されていない画像から削除される
+		long fileSize = Files.size(first);
+		ImageCache bounded = new ImageCache(dir, fileSize * 2, 100, new RecipeHttpTransport(Duration.ofSeconds(2), Duration.ofSeconds(2)), 300);
+		bounded.fetch(2, baseUrl + "2.png").join();
+		assertThat(bounded.cached(1)).isNotNull(); // 1 を参照して 2 より新しくする
+		bounded.fetch(3, baseUrl + "3.png").join();
+
+		assertThat(bounded.cached(2)).isNull();
+		// 送信中のリクエストのため、追い出したファイルはしばらく残す
+		assertThat(Files.exists(dir.resolve("2.jpg"))).isTrue();
+		for (int i = 0; i < 50 && Files.exists(dir.resolve("2.jpg")); i++) {
+			Thread.sleep(50);
+		}
+		assertThat(Files.exists(dir.resolve("2.jpg"))).isFalse();
+		assertThat(bounded.cached(1)).isNotNull();
+		assertThat(bounded.cached(3)).isNotNull();
+		assertThat(bounded.size()).isEqualTo(2);
+	}
+
+}
@@ -0,0 +1,48 @@
+package com.example.myrandomdishapp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class IngredientIndexTests {
+
+	private static Recipe recipe(long id, String title, String... materials) {
+		return new Recipe(id, title, "", "", List.of(materials), "");
+	}
+
+	@Test
+	void normalizesGroupMarksBracketsAndKatakana() {
+		assertThat(IngredientIndex.normalize("★鶏もも肉（皮なし）")).isEqualTo("鶏もも肉");
+		assertThat(IngredientIndex.normalize("(A)醤油")).isEqualTo("醤油");
+		assertThat(IngredientIndex.normalize("A 砂糖")).isEqualTo("砂糖");
+		assertThat(IngredientIndex.normalize("ﾍﾞｰｺﾝ")).isEqualTo("べーこん");
+		assertThat(IngredientIndex.normalize("ham")).isEqualTo("ham");
+	}
+
+	@Test
+	void filtersByIncludedAndExcludedIngredients() {
+		Map<String, RecipePool.PoolEntry> entries = Map.of(
+				"10-1-100", new RecipePool.PoolEntry(List.of(
+						recipe(1, "親子丼", "鶏もも肉", "卵", "玉ねぎ"),
+						recipe(2, "照り焼き", "鶏むね肉", "醤油")), 0),
+				"10-1-101", new RecipePool.PoolEntry(List.of(
+						recipe(3, "肉じゃが", "牛肉", "じゃがいも", "タマネギ"),
+						recipe(1, "親子丼", "鶏もも肉", "卵", "玉ねぎ")), 0));
+
+		IngredientIndex index = IngredientIndex.build(entries);
+
+		assertThat(index.size()).isEqualTo(3);
+		Random random = new Random(1);
+		for (int i = 0; i < 20; i++) {
+			assertThat(index.pickRandom(List.of("鶏"), List.of("卵"), random).recipe().title()).isEqualTo("照り焼き");
+			assertThat(index.pickRandom(List.of("たまねぎ"), List.of("鶏"), random).recipe().title()).isEqualTo("肉じゃが");
+		}
+		assertThat(index.matching(List.of("ねぎ"), List.of()).cardinality()).isEqualTo(2);
+		assertThat(index.pickRandom(List.of("鶏"), List.of("鶏"), random)).isNull();
+	}
+
+}
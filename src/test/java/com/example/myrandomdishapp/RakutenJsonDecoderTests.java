@@ -0,0 +1,56 @@
+package com.example.myrandomdishapp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class RakutenJsonDecoderTests {
+
+	@Test
+	void decodesOnlyUsedRankingFields() throws Exception {
+		String json = """
+				{"result":[
+				  {"foodImageUrl":"https://img/1.jpg","recipeDescription":"簡単","recipePublishday":"2017/10/10",
+				   "shop":0,"pickup":1,"recipeId":1170006047,"nickname":{"nested":[1,2]},
+				   "recipeMaterial":["鶏もも肉","卵"],"recipeTitle":"親子丼","recipeUrl":"https://recipe/1"},
+				  {"mediumImageUrl":"https://img/2m.jpg"}
+				],"other":{"x":[{"y":1}]}}
+				""";
+
+		List<Recipe> recipes = RakutenJsonDecoder.decodeRanking(stream(json));
+
+		assertThat(recipes).hasSize(2);
+		assertThat(recipes.get(0)).isEqualTo(new Recipe(1170006047L, "親子丼", "https://img/1.jpg", "簡単",
+				List.of("鶏もも肉", "卵"), "https://recipe/1"));
+		assertThat(recipes.get(1).foodImageUrl()).isEqualTo("https://img/2m.jpg");
+		assertThat(recipes.get(1).title()).isEqualTo("（料理名不明）");
+		assertThat(recipes.get(1).materialText()).isEqualTo("材料は不明です。");
+	}
+
+	@Test
+	void decodesCategoryIdsOfRequestedTypeOnly() throws Exception {
+		String json = """
+				{"result":{
+				  "large":[{"categoryId":"10","categoryName":"肉"}],
+				  "small":[{"categoryName":"鶏","parentCategoryId":"290","categoryId":950,"categoryUrl":"u"}]
+				}}
+				""";
+		Map<Integer, Integer> parents = new HashMap<>();
+
+		int count = RakutenJsonDecoder.decodeCategories(stream(json), "small", parents::put);
+
+		assertThat(count).isEqualTo(1);
+		assertThat(parents).containsExactly(Map.entry(950, 290));
+	}
+
+	private static ByteArrayInputStream stream(String json) {
+		return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+	}
+
+}
@@ -0,0 +1,32 @@
+package com.example.myrandomdishapp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class RandomSamplingTests {
+
+	@Test
+	void returnsDistinctIndicesWithinBound() {
+		Random random = new Random(42);
+		for (int trial = 0; trial < 100; trial++) {
+			int[] indices = RandomSampling.distinctIndices(30, 7, random);
+
+			assertThat(indices).hasSize(7);
+			assertThat(Arrays.stream(indices).distinct().count()).isEqualTo(7);
+			assertThat(Arrays.stream(indices).allMatch(i -> i >= 0 && i < 30)).isTrue();
+		}
+	}
+
+	@Test
+	void clampsCountToBound() {
+		int[] indices = RandomSampling.distinctIndices(5, 10, new Random(1));
+
+		assertThat(indices).containsExactlyInAnyOrder(0, 1, 2, 3, 4);
+		assertThat(RandomSampling.distinctIndices(0, 3, new Random(1))).isEmpty();
+	}
+
+}
@@ -0,0 +1,151 @@
+package com.example.myrandomdishapp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class RecipePoolIndexerTests {
+
+	private static final long MIN = TimeUnit.MINUTES.toMillis(30);
+	private static final long MAX = TimeUnit.HOURS.toMillis(48);
+
+	@Test
+	void refreshesPopularCategoriesMoreOftenWithinBudget() {
+		List<String> paths = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			paths.add("cold-" + i);
+		}
+		paths.add("hot");
+
+		Map<String, Long> intervals = RecipePoolIndexer.planIntervals(paths, p -> p.equals("hot") ? 500 : 0, 1440, MIN, MAX);
+
+		assertThat(intervals.get("hot")).isLessThan(intervals.get("cold-0"));
+		assertThat(intervals.values()).allMatch(v -> v >= MIN);
+		assertThat(refreshesPerHour(intervals)).isLessThanOrEqualTo(1440.0);
+	}
+
+	@Test
+	void stretchesIntervalsWhenMaximumWouldExceedBudget() {
+		List<String> paths = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			paths.add("cold-" + i);
+		}
+
+		// 上限48時間で全カテゴリを回すと1時間あたり約21回必要だが、枠は10回しかない
+		Map<String, Long> intervals = RecipePoolIndexer.planIntervals(paths, p -> 0, 10, MIN, MAX);
+
+		assertThat(refreshesPerHour(intervals)).isLessThanOrEqualTo(10.0);
+	}
+
+	@Test
+	void fetchesUnfetchedCategoriesFirstThenOldestDue() {
+		long now = System.currentTimeMillis();
+		RecipePool pool = new RecipePool();
+		pool.put("10-1-100", List.of(recipe(100, "古い")), now - TimeUnit.HOURS.toMillis(1));
+		pool.put("10-1-101", List.of(recipe(101, "もっと古い")), now - TimeUnit.HOURS.toMillis(2));
+		pool.put("10-1-102", List.of(recipe(102, "新しい")), now - TimeUnit.MINUTES.toMillis(1));
+		StubApiClient client = new StubApiClient(path -> List.of(recipe(1, "更新後" + path)));
+		RecipePoolIndexer indexer = new RecipePoolIndexer(client, pool);
+		indexer.updateCategoryPaths(List.of("10-1-100", "10-1-101", "10-1-102", "10-1-103"));
+
+		for (int i = 0; i < 5; i++) {
+			indexer.run();
+		}
+
+		// 1回の実行で1カテゴリだけ取得し、更新間隔（下限30分）を過ぎていないカテゴリは取得しない
+		assertThat(client.requested).containsExactly("10-1-103", "10-1-101", "10-1-100");
+		assertThat(pool.get("10-1-103").recipes()).extracting(Recipe::title).containsExactly("更新後10-1-103");
+		assertThat(pool.get("10-1-101").recipes()).extracting(Recipe::title).containsExactly("更新後10-1-101");
+		assertThat(pool.get("10-1-100").fetchedAtMillis()).isGreaterThanOrEqualTo(now);
+		assertThat(pool.get("10-1-102").recipes()).extracting(Recipe::title).containsExactly("新しい");
+	}
+
+	@Test
+	void rateLimitedRefreshKeepsFetchTimeAndRetriesCategory() {
+		RecipePool pool = new RecipePool();
+		pool.put("10-1-100", List.of(recipe(1, "親子丼")), 1_000);
+		StubApiClient client = new StubApiClient(path -> {
+			throw new RateLimitExceededException("利用枠を使い切っています");
+		});
+		RecipePoolIndexer indexer = new RecipePoolIndexer(client, pool);
+		indexer.updateCategoryPaths(List.of("10-1-100", "10-1-101"));
+
+		indexer.run();
+		indexer.run();
+
+		// APIを呼び出していないため、取得時刻は進めず未取得のカテゴリも登録しない
+		assertThat(client.requested).containsExactlyInAnyOrder("10-1-100", "10-1-101");
+		assertThat(pool.get("10-1-100").fetchedAtMillis()).isEqualTo(1_000);
+		assertThat(pool.get("10-1-101")).isNull();
+
+		// 更新時刻を延ばさずに待ち行列へ戻すため、次の実行ですぐに再試行する
+		indexer.run();
+		assertThat(client.requested).hasSize(3);
+	}
+
+	@Test
+	void failedRefreshKeepsExistingEntryAndBacksOff() {
+		RecipePool pool = new RecipePool();
+		pool.put("10-1-100", List.of(recipe(1, "親子丼")), 1_000);
+		StubApiClient client = new StubApiClient(path -> {
+			throw new UpstreamHttpException(500, "");
+		});
+		RecipePoolIndexer indexer = new RecipePoolIndexer(client, pool);
+		indexer.updateCategoryPaths(List.of("10-1-100", "10-1-101"));
+
+		indexer.run();
+		indexer.run();
+
+		// 失敗しても取得済みのレシピと取得時刻は変えず、未取得のカテゴリに空のエントリも作らない
+		assertThat(client.requested).containsExactlyInAnyOrder("10-1-100", "10-1-101");
+		assertThat(pool.get("10-1-100").fetchedAtMillis()).isEqualTo(1_000);
+		assertThat(pool.get("10-1-100").recipes()).extracting(Recipe::title).containsExactly("親子丼");
+		assertThat(pool.get("10-1-101")).isNull();
+
+		// 再試行は間隔を空けてから行う
+		indexer.run();
+		assertThat(client.requested).hasSize(2);
+	}
+
+	private static Recipe recipe(long id, String title) {
+		return new Recipe(id, title, "", "", List.of("卵"), "");
+	}
+
+	/**
+	 * 定期更新でのAPI呼び出しを、テストで指定した処理に置き換えるクライアント。
+	 */
+	private static class StubApiClient extends RecipeApiClient {
+
+		interface Fetcher {
+			List<Recipe> fetch(String categoryPath) throws Exception;
+		}
+
+		private final Fetcher fetcher;
+		final List<String> requested = new ArrayList<>();
+
+		StubApiClient(Fetcher fetcher) {
+			super("test", "http://127.0.0.1:1/CategoryRanking", "http://127.0.0.1:1/CategoryList",
+					new RecipeHttpTransport(Duration.ofSeconds(1), Duration.ofSeconds(1)), new DishMetrics(new SimpleMeterRegistry()));
+			this.fetcher = fetcher;
+		}
+
+		@Override
+		public Ranking refreshCategoryRanking(String categoryId) throws Exception {
+			requested.add(categoryId);
+			return new Ranking(fetcher.fetch(categoryId), System.currentTimeMillis());
+		}
+	}
+
+	private static double refreshesPerHour(Map<String, Long> intervals) {
+		return intervals.values().stream().mapToDouble(v -> (double) TimeUnit.HOURS.toMillis(1) / v).sum();
+	}
+
+}
@@ -0,0 +1,84 @@
+package com.example.myrandomdishapp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class RecipePoolTests {
+
+	private static Recipe recipe(long id, String title) {
+		return new Recipe(id, title, "https://example.com/" + id + ".jpg", "", List.of("卵"), "");
+	}
+
+	@Test
+	void retainCategoriesDropsPathsMissingFromReloadedIndex() {
+		RecipePool pool = new RecipePool();
+		pool.put("10-1-100", List.of(recipe(1, "親子丼")));
+		pool.put("10-1-101", List.of(recipe(2, "肉じゃが")));
+		pool.put("10-1-102", List.of());
+
+		assertThat(pool.retainCategories(List.of("10-1-100"))).isEqualTo(2);
+
+		assertThat(pool.categoryCount()).isEqualTo(1);
+		assertThat(pool.get("10-1-101")).isNull();
+		assertThat(pool.get("10-1-102")).isNull();
+		Random random = new Random(1);
+		for (int i = 0; i < 20; i++) {
+			assertThat(pool.pickRandom(random).categoryPath()).isEqualTo("10-1-100");
+		}
+		assertThat(pool.sampleDistinct(3, random)).extracting(RecipePool.PoolPick::categoryPath).containsExactly("10-1-100");
+		assertThat(pool.retainCategories(List.of("10-1-100"))).isZero();
+	}
+
+	@Test
+	void olderFetchDoesNotReplaceOrRefreshNewerEntry() {
+		RecipePool pool = new RecipePool();
+		pool.put("10-1-100", List.of(recipe(1, "親子丼")), 2_000);
+
+		pool.put("10-1-100", List.of(recipe(2, "肉じゃが")), 1_000);
+		assertThat(pool.get("10-1-100").fetchedAtMillis()).isEqualTo(2_000);
+		assertThat(pool.get("10-1-100").recipes()).extracting(Recipe::title).containsExactly("親子丼");
+
+		pool.put("10-1-100", List.of(recipe(2, "肉じゃが")), 3_000);
+		assertThat(pool.get("10-1-100").fetchedAtMillis()).isEqualTo(3_000);
+		assertThat(pool.get("10-1-100").recipes()).extracting(Recipe::title).containsExactly("肉じゃが");
+	}
+
+	@Test
+	void refetchingSameRecipesKeepsIngredientIndexAndPayloads() {
+		RecipePool pool = new RecipePool();
+		pool.put("10-1-100", List.of(recipe(1, "親子丼")), 1_000);
+		IngredientIndex index = pool.ingredientIndex();
+
+		List<DishPayload> payloads = pool.get("10-1-100").payloads();
+		pool.put("10-1-100", List.of(recipe(1, "親子丼")), 2_000);
+		assertThat(pool.ingredientIndex()).isSameAs(index);
+		assertThat(pool.get("10-1-100").fetchedAtMillis()).isEqualTo(2_000);
+		assertThat(pool.get("10-1-100").payloads()).isSameAs(payloads);
+
+		pool.put("10-1-100", List.of(recipe(2, "肉じゃが")), 3_000);
+		assertThat(pool.ingredientIndex()).isNotSameAs(index);
+	}
+
+	@Test
+	void dropsImageUrlsOfRecipesNoLongerInPool() {
+		RecipePool pool = new RecipePool();
+		pool.put("10-1-100", List.of(recipe(1, "親子丼"), recipe(2, "肉じゃが")), 1_000);
+		pool.put("10-1-101", List.of(recipe(2, "肉じゃが"), recipe(3, "カレー")), 1_000);
+
+		// 取り直しで入れ替わったレシピの画像URLは取り除く
+		pool.put("10-1-100", List.of(recipe(2, "肉じゃが"), recipe(4, "煮物")), 2_000);
+		assertThat(pool.imageUrlOf(1)).isNull();
+		assertThat(pool.imageUrlOf(4)).isEqualTo("https://example.com/4.jpg");
+
+		// 削除したカテゴリのレシピでも、残ったカテゴリにあるものは残す
+		pool.retainCategories(List.of("10-1-100"));
+		assertThat(pool.imageUrlOf(3)).isNull();
+		assertThat(pool.imageUrlOf(2)).isEqualTo("https://example.com/2.jpg");
+		assertThat(pool.imageUrlOf(4)).isEqualTo("https://example.com/4.jpg");
+	}
+
+}
@@ -0,0 +1,73 @@
+package com.example.myrandomdishapp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RecipeSnapshotStoreTests {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void savedSnapshotCanBeLoadedBack() throws Exception {
+		RecipeSnapshotStore store = new RecipeSnapshotStore(tempDir.resolve("snapshot.bin"));
+		Recipe recipe = new Recipe(1001L, "肉じゃが", "https://example.com/a.jpg", "定番",
+				List.of("じゃがいも", "牛肉"), "https://example.com/r");
+
+		CategoryIndex.IdPairs medium = new CategoryIndex.IdPairs();
+		medium.add(290, 10);
+		CategoryIndex.IdPairs small = new CategoryIndex.IdPairs();
+		small.add(950, 290);
+
+		store.save(CategoryIndex.build(medium, small),
+				Map.of("10-290-950", new RecipePool.PoolEntry(List.of(recipe), 1234L)));
+		RecipeSnapshotStore.Snapshot snapshot = store.load();
+
+		assertThat(snapshot).isNotNull();
+		assertThat(snapshot.categoryIndex().allPaths()).containsExactly("10-290-950");
+		assertThat(snapshot.pool().get("10-290-950").fetchedAtMillis()).isEqualTo(1234L);
+		assertThat(snapshot.pool().get("10-290-950").recipes()).containsExactly(recipe);
+	}
+
+	@Test
+	void corruptedCountsAreIgnored() throws Exception {
+		Path file = tempDir.resolve("snapshot.bin");
+		RecipeSnapshotStore store = new RecipeSnapshotStore(file);
+		CategoryIndex.IdPairs medium = new CategoryIndex.IdPairs();
+		medium.add(290, 10);
+		CategoryIndex.IdPairs small = new CategoryIndex.IdPairs();
+		small.add(950, 290);
+		CategoryIndex index = CategoryIndex.build(medium, small);
+
+		// 末尾の4バイトは、プールが空ならカテゴリ数、レシピのないカテゴリが1件ならそのレシピ数
+		for (Map<String, RecipePool.PoolEntry> pool : List.of(
+				Map.<String, RecipePool.PoolEntry>of(),
+				Map.of("10-290-950", new RecipePool.PoolEntry(List.of(), 1234L)))) {
+			for (int corrupted : new int[] { Integer.MAX_VALUE, -1 }) {
+				store.save(index, pool);
+				byte[] bytes = Files.readAllBytes(file);
+				ByteBuffer.wrap(bytes).putInt(bytes.length - 4, corrupted);
+				Files.write(file, bytes);
+
+				assertThat(store.load()).isNull();
+			}
+		}
+	}
+
+	@Test
+	void unknownFileFormatIsIgnored() throws Exception {
+		Path file = tempDir.resolve("snapshot.bin");
+		Files.write(file, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+
+		assertThat(new RecipeSnapshotStore(file).load()).isNull();
+	}
+
+}
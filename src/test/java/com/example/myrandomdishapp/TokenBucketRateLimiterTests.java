@@ -0,0 +1,33 @@
+package com.example.myrandomdishapp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class TokenBucketRateLimiterTests {
+
+	@Test
+	void allowsBurstThenRejectsWhenWaitWouldExceedLimit() throws Exception {
+		TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, TimeUnit.HOURS, 2);
+
+		assertThat(limiter.tryAcquire(0, TimeUnit.MILLISECONDS)).isTrue();
+		assertThat(limiter.tryAcquire(0, TimeUnit.MILLISECONDS)).isTrue();
+		assertThat(limiter.tryAcquire(100, TimeUnit.MILLISECONDS)).isFalse();
+	}
+
+	@Test
+	void waitsForNextTokenWithinMaxWait() throws Exception {
+		TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(50, TimeUnit.MILLISECONDS, 1);
+		long start = System.nanoTime();
+		boolean first = limiter.tryAcquire(0, TimeUnit.MILLISECONDS);
+		boolean second = limiter.tryAcquire(1, TimeUnit.SECONDS);
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		assertThat(first).isTrue();
+		assertThat(second).isTrue();
+		assertThat(elapsedMillis).isGreaterThanOrEqualTo(49);
+	}
+
+}
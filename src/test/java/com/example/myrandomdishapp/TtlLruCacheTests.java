@@ -0,0 +1,46 @@
+package com.example.myrandomdishapp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class TtlLruCacheTests {
+
+	@Test
+	void evictsLeastRecentlyUsedEntryWhenFull() {
+		TtlLruCache<String, String> cache = new TtlLruCache<>(2, 1, TimeUnit.HOURS);
+		cache.put("a", "A");
+		cache.put("b", "B");
+		cache.get("a");
+		cache.put("c", "C");
+
+		assertThat(cache.get("a")).isEqualTo("A");
+		assertThat(cache.get("b")).isNull();
+		assertThat(cache.get("c")).isEqualTo("C");
+		assertThat(cache.getEvictionCount()).isEqualTo(1);
+		assertThat(cache.getHitCount()).isEqualTo(3);
+		assertThat(cache.getMissCount()).isEqualTo(1);
+	}
+
+	@Test
+	void expiredEntriesAreNotReturned() {
+		TtlLruCache<String, String> cache = new TtlLruCache<>(10, 0, TimeUnit.NANOSECONDS);
+		cache.put("a", "A");
+
+		assertThat(cache.get("a")).isNull();
+		assertThat(cache.size()).isZero();
+	}
+
+	@Test
+	void expiredEntriesRemainAvailableAsStaleDuringGracePeriod() {
+		TtlLruCache<String, String> cache = new TtlLruCache<>(10, 0, 1, TimeUnit.HOURS);
+		cache.put("a", "A");
+
+		assertThat(cache.get("a")).isNull();
+		assertThat(cache.getStale("a")).isEqualTo("A");
+		assertThat(cache.getStale("b")).isNull();
+	}
+
+}